@@ -17,10 +17,13 @@ public class EconomyPlugin extends JavaPlugin {
 
     private static EconomyPlugin instance;
     private LandsIntegration lands; // typed reference to LandsIntegration when available
+    private com.helixteam.economyplugin.lands.LandsGateway landsGateway;
+    private com.helixteam.economyplugin.lands.LandLookupCache landLookupCache;
     private Economy essentialsEco;
     private BiomeDropManager biomeDropManager;
     private com.helixteam.economyplugin.currency.CurrencyManager currencyManager;
     private com.helixteam.economyplugin.work.WorkPointManager workManager;
+    private com.helixteam.economyplugin.currency.BillCodec billCodec;
     // Optional debug file handler and logger: writes FINE/FINER logs to a file when enabled
     private FileHandler debugFileHandler = null;
     private Logger debugLogger = null;
@@ -69,6 +72,9 @@ public class EconomyPlugin extends JavaPlugin {
             getServer().getPluginManager().disablePlugin(this);
             return;
         }
+        landsGateway = new com.helixteam.economyplugin.lands.LandsGateway(this);
+        landLookupCache = new com.helixteam.economyplugin.lands.LandLookupCache(this);
+        if (lands != null) landLookupCache.registerInvalidation();
 
         // Inicializar economía (Vault provider)
         if (!setupEconomy()) {
@@ -81,7 +87,7 @@ public class EconomyPlugin extends JavaPlugin {
         biomeDropManager = new BiomeDropManager();
         biomeDropManager.loadConfig(this);
         PluginManager pm = getServer().getPluginManager();
-        pm.registerEvents(new BiomeDropListener(biomeDropManager, this), this);
+        pm.registerEvents(new BiomeDropListener(biomeDropManager), this);
         getLogger().info("BiomeDropListener registrado y configuración cargada.");
 
         // Inicializar WorkPointManager y listener
@@ -90,11 +96,36 @@ public class EconomyPlugin extends JavaPlugin {
         pm.registerEvents(new com.helixteam.economyplugin.work.WorkListener(workManager, this), this);
         getLogger().info("WorkListener registrado y configuración de trabajo cargada.");
 
-        // Inicializar CurrencyManager y cargar persistencia
-        currencyManager = new com.helixteam.economyplugin.currency.CurrencyManager(this);
-        currencyManager.loadAll();
+        // Codec de billetes (claves PDC precalculadas)
+        billCodec = new com.helixteam.economyplugin.currency.BillCodec(this);
+        // Inicializar CurrencyManager y cargar persistencia. Si el almacenamiento no abre,
+        // el subsistema de moneda queda deshabilitado (sin listeners ni comandos)
+        try {
+            currencyManager = new com.helixteam.economyplugin.currency.CurrencyManager(this);
+            currencyManager.loadAll();
+        } catch (com.helixteam.economyplugin.currency.CurrencyStorageException e) {
+            getLogger().severe("Moneda deshabilitada: " + e.getMessage());
+            if (currencyManager != null) {
+                try {
+                    currencyManager.shutdown();
+                } catch (Throwable ignored) {
+                }
+                currencyManager = null;
+            }
+            if (getCommand("landcurrency") != null) {
+                getCommand("landcurrency").setExecutor((sender, command, label, args) -> {
+                    sender.sendMessage("El sistema de monedas está deshabilitado: revisa el log del servidor.");
+                    return true;
+                });
+            }
+            return;
+        }
+        currencyManager.startBillRefresh();
         // Start periodic sync with Lands if configured
         currencyManager.startPeriodicSync();
+        pm.registerEvents(new com.helixteam.economyplugin.currency.BillValuationListener(this), this);
+        pm.registerEvents(new com.helixteam.economyplugin.currency.BillHolderListener(this), this);
+        pm.registerEvents(currencyManager.getPendingReturns(), this);
         getLogger().info("CurrencyManager inicializado.");
         // Registrar comando de gestión de moneda
         if (getCommand("landcurrency") != null) {
@@ -116,6 +147,22 @@ public class EconomyPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // Volcado final de las monedas pendientes de escribir
+        if (currencyManager != null) {
+            try {
+                currencyManager.shutdown();
+            } catch (Throwable t) {
+                getLogger().severe("Error guardando monedas al deshabilitar: " + t.getMessage());
+            }
+        }
+        // Pagar los puntos de trabajo acumulados
+        if (workManager != null) {
+            try {
+                workManager.shutdown();
+            } catch (Throwable t) {
+                getLogger().severe("Error pagando puntos de trabajo al deshabilitar: " + t.getMessage());
+            }
+        }
         // Cleanup si es necesario
         if (debugFileHandler != null) {
             try {
@@ -140,6 +187,14 @@ public class EconomyPlugin extends JavaPlugin {
         return lands;
     }
 
+    public com.helixteam.economyplugin.lands.LandsGateway getLandsGateway() {
+        return landsGateway;
+    }
+
+    public com.helixteam.economyplugin.lands.LandLookupCache getLandLookupCache() {
+        return landLookupCache;
+    }
+
     public Economy getEconomy() {
         return essentialsEco;
     }
@@ -156,6 +211,10 @@ public class EconomyPlugin extends JavaPlugin {
         return workManager;
     }
 
+    public com.helixteam.economyplugin.currency.BillCodec getBillCodec() {
+        return billCodec;
+    }
+
     public NamespacedKey key(String key) {
         return new NamespacedKey(this, key);
     }
@@ -0,0 +1,79 @@
+package com.helixteam.economyplugin.biomes;
+
+import org.bukkit.Material;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cooldowns de reglas de drops por bioma, acotados y con caducidad por generaciones.
+ *
+ * Cada jugador tiene un long[] indexado por Material.ordinal() con el instante (ms) de la
+ * última aplicación, y la generación en la que lo usó por última vez. sweep() se llama
+ * cada cooldown: avanza la generación y descarta los jugadores que no han roto nada con
+ * regla en la generación anterior ni en la actual (todos sus cooldowns ya vencieron). Al
+ * salir el jugador se libera su tabla. Consultar y marcar no reserva memoria.
+ *
+ * Solo se usa desde el hilo principal (eventos de bloque y scheduler).
+ */
+public class BiomeCooldowns {
+
+    private static final int MATERIALS = Material.values().length;
+
+    private static final class Slot {
+        final long[] times = new long[MATERIALS];
+        int generation;
+    }
+
+    private final ConcurrentHashMap<UUID, Slot> slots = new ConcurrentHashMap<>();
+    private int generation = 0;
+
+    /**
+     * true si el material está en cooldown para el jugador.
+     */
+    public boolean isCooled(UUID player, Material material, long cooldownMs, long nowMs) {
+        if (cooldownMs <= 0) return false;
+        Slot s = slots.get(player);
+        if (s == null) return false;
+        long last = s.times[material.ordinal()];
+        return last != 0L && nowMs - last < cooldownMs;
+    }
+
+    public void mark(UUID player, Material material, long nowMs) {
+        Slot s = slots.get(player);
+        if (s == null) s = slots.computeIfAbsent(player, k -> new Slot());
+        s.times[material.ordinal()] = nowMs;
+        s.generation = generation;
+    }
+
+    /**
+     * Avanza una generación y descarta los jugadores sin uso en las dos últimas.
+     * Devuelve cuántos se descartaron.
+     */
+    public int sweep() {
+        int keepFrom = generation;
+        generation++;
+        int before = slots.size();
+        slots.values().removeIf(s -> s.generation < keepFrom);
+        return before - slots.size();
+    }
+
+    public void release(UUID player) {
+        slots.remove(player);
+    }
+
+    public void clear() {
+        slots.clear();
+    }
+
+    public int getTrackedPlayers() {
+        return slots.size();
+    }
+
+    /**
+     * Memoria aproximada de las tablas (bytes): 8 por material más cabeceras.
+     */
+    public long footprintBytes() {
+        return slots.size() * (32L + 16 + 8L * MATERIALS);
+    }
+}
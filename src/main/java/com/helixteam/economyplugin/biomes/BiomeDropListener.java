@@ -1,14 +1,13 @@
 package com.helixteam.economyplugin.biomes;
 
 import java.util.Collection;
-import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.ItemStack;
 
 /**
@@ -19,89 +18,75 @@ public class BiomeDropListener implements Listener {
 
     private final BiomeDropManager manager;
     private final Random random = new Random();
-    // cooldowns por jugador -> material -> timestamp(ms)
-    private final Map<UUID, Map<org.bukkit.Material, Long>> lastApplied = new ConcurrentHashMap<>();
-    private final int cooldownSeconds;
+    // cooldowns por jugador y material (de BiomeDropManager); se liberan al salir y por generaciones
+    private final BiomeCooldowns cooldowns;
 
-    public BiomeDropListener(BiomeDropManager manager, org.bukkit.plugin.Plugin plugin) {
+    public BiomeDropListener(BiomeDropManager manager) {
         this.manager = manager;
-        this.cooldownSeconds = plugin.getConfig().getInt("biome_drop_cooldown_seconds", 5);
+        this.cooldowns = manager.getCooldowns();
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        cooldowns.release(event.getPlayer().getUniqueId());
     }
 
     @EventHandler(ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
         var block = event.getBlock();
-        var player = event.getPlayer();
-
         var biome = block.getBiome();
-        var material = block.getType();
 
         // Si no hay reglas configuradas para este bioma, no interferimos
-        if (!manager.hasRulesForBiome(biome)) return;
+        BiomeDropManager.DropRule[] rules = manager.getRules(biome);
+        if (rules == null) return;
 
-        var opt = manager.getRule(biome, material);
-        BiomeDropManager.DropRule rule = null;
+        var player = event.getPlayer();
+        BiomeDropManager.DropRule rule = rules[block.getType().ordinal()];
+
+        // Sin regla para el bloque en sí, solo puede interesar si alguno de sus drops la
+        // tiene: si el bioma no tiene reglas sobre items ni siquiera calculamos los drops.
+        java.util.BitSet dropRules = null;
+        if (rule == null) {
+            dropRules = manager.getDropRules(biome);
+            if (dropRules == null) return;
+        }
 
         // Obtenemos drops posibles una sola vez (se usará tanto para decidir si aplicar reglas
         // como para generar las entidades resultantes).
         Collection<ItemStack> drops = block.getDrops(player.getInventory().getItemInMainHand());
 
-        // Comprueba cooldowns por material: recopilamos qué materiales están en cooldown
-        // para este jugador. En vez de devolver temprano, si hay cooldown para un material
-        // concreto simplemente NO aplicaremos la regla (se reemitirá el drop base).
-        UUID puid = player.getUniqueId();
-        long now = System.currentTimeMillis();
-        Map<org.bukkit.Material, Long> playerMap = lastApplied.get(puid);
-        java.util.Set<org.bukkit.Material> cooled = new java.util.HashSet<>();
-        if (playerMap != null) {
-            for (ItemStack d : drops) {
-                Long t = playerMap.get(d.getType());
-                if (t != null && (now - t) < (long) cooldownSeconds * 1000L) {
-                    cooled.add(d.getType());
-                }
-            }
-        }
-
-        // Si no hay regla para el bloque en sí, comprobamos si alguna de las posibles
-        // piezas a soltar tiene una regla específica. Si ninguna tiene regla, no interferimos.
-        if (opt.isEmpty()) {
+        // Si ninguna de las piezas a soltar tiene una regla específica, no interferimos.
+        if (rule == null) {
             boolean anyDropRule = false;
             for (ItemStack d : drops) {
-                if (manager.getRule(biome, d.getType()).isPresent()) {
+                if (dropRules.get(d.getType().ordinal())) {
                     anyDropRule = true;
                     break;
                 }
             }
             if (!anyDropRule) return;
-        } else {
-            rule = opt.get();
         }
 
+        // Cooldowns por material: si un material está en cooldown para el jugador NO
+        // aplicamos la regla (se reemite el drop base). Los timestamps se registran al final,
+        // así todos los drops del mismo material ven el mismo estado.
+        long now = System.currentTimeMillis();
+        long cooldownMs = manager.getCooldownSeconds() * 1000L;
+        UUID playerId = player.getUniqueId();
+
         // Desactivamos los drops automáticos y gestionamos manualmente según las reglas encontradas
         event.setDropItems(false);
 
         for (ItemStack drop : drops) {
             int baseAmount = drop.getAmount();
-
-            // Si este material está en cooldown para el jugador, NO aplicamos la regla
-            // (se reemitirá el drop base). En caso contrario, buscamos una regla específica
-            // para el drop y usamos la regla del bloque como fallback.
-            if (cooled.contains(drop.getType())) {
-                ItemStack outDefault = drop.clone();
-                outDefault.setAmount(baseAmount);
-                block.getWorld().dropItemNaturally(block.getLocation(), outDefault);
-                continue;
-            }
-
-            var dropRuleOpt = manager.getRule(biome, drop.getType());
-            BiomeDropManager.DropRule ruleToApply = dropRuleOpt.orElse(rule);
-
-            // Si no existe ninguna regla para este drop concreto (y rule también puede ser null),
-            // reemitimos el drop base.
-            if (ruleToApply == null) {
-                ItemStack outDefault = drop.clone();
-                outDefault.setAmount(baseAmount);
-                block.getWorld().dropItemNaturally(block.getLocation(), outDefault);
+            org.bukkit.Material m = drop.getType();
+
+            // Regla específica para el drop y, si no hay, la del bloque como fallback.
+            // Sin regla o en cooldown: reemitimos el drop base.
+            BiomeDropManager.DropRule ruleToApply = rules[m.ordinal()];
+            if (ruleToApply == null) ruleToApply = rule;
+            if (ruleToApply == null || cooldowns.isCooled(playerId, m, cooldownMs, now)) {
+                block.getWorld().dropItemNaturally(block.getLocation(), drop.clone());
                 continue;
             }
 
@@ -127,13 +112,12 @@ public class BiomeDropListener implements Listener {
         }
 
         // Registrar timestamps de aplicación para los materiales que realmente procesamos
-        UUID playerId = player.getUniqueId();
-        Map<org.bukkit.Material, Long> map = lastApplied.computeIfAbsent(playerId, k -> new ConcurrentHashMap<>());
-        long appliedAt = System.currentTimeMillis();
+        // (sin cooldown no hace falta registrar nada)
+        if (cooldownMs <= 0) return;
         for (ItemStack d : drops) {
             org.bukkit.Material m = d.getType();
-            if (!cooled.contains(m) && manager.getRule(biome, m).isPresent() || (rule != null && !cooled.contains(m))) {
-                map.put(m, appliedAt);
+            if ((rules[m.ordinal()] != null || rule != null) && !cooldowns.isCooled(playerId, m, cooldownMs, now)) {
+                cooldowns.mark(playerId, m, now);
             }
         }
     }
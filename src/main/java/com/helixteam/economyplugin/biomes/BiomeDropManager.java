@@ -5,10 +5,10 @@ import org.bukkit.Material;
 import org.bukkit.block.Biome;
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * Manager responsable de cargar reglas dinámicas de drops por bioma desde config.yml.
@@ -25,6 +25,13 @@ import java.util.Optional;
  * - `multiplier` se aplica únicamente cuando la probabilidad acierta.
  *   Si no está presente, por defecto multiplier = 1.0.
  * - Si multiplier == 0 y la probabilidad acierta, el drop resultante debe ser vacío.
+ *
+ * Las reglas se compilan en una matriz DropRule[bioma][material] (por ordinal) y un
+ * BitSet por bioma con los materiales con regla que pueden salir como drop (items); todo
+ * se publica entero en cada recarga y las consultas no reservan memoria.
+ *
+ * También guarda los cooldowns de aplicación (`biome_drop_cooldown_seconds`) y la tarea
+ * que los barre, que se reinicia en cada recarga con el cooldown vigente.
  */
 public class BiomeDropManager {
 
@@ -40,19 +47,79 @@ public class BiomeDropManager {
         }
     }
 
-    private final Map<Biome, Map<Material, DropRule>> rules = new HashMap<>();
+    private static final int MATERIALS = Material.values().length;
+
+    /**
+     * Reglas compiladas: null en los biomas sin reglas (matrix) o sin reglas sobre items
+     * (dropRules).
+     */
+    private static final class Compiled {
+        final DropRule[][] matrix;
+        final BitSet[] dropRules;
+
+        Compiled(DropRule[][] matrix, BitSet[] dropRules) {
+            this.matrix = matrix;
+            this.dropRules = dropRules;
+        }
+    }
+
+    private volatile Compiled compiled = new Compiled(new DropRule[Biome.values().length][], new BitSet[Biome.values().length]);
+
+    private final BiomeCooldowns cooldowns = new BiomeCooldowns();
+    private volatile int cooldownSeconds = 5;
+    private org.bukkit.scheduler.BukkitTask sweepTask = null;
 
     public BiomeDropManager() {
     }
 
+    /**
+     * Cooldowns de aplicación de reglas (los usa BiomeDropListener).
+     */
+    public BiomeCooldowns getCooldowns() {
+        return cooldowns;
+    }
+
+    /**
+     * Segundos de cooldown por jugador y material (0 = sin cooldown).
+     */
+    public int getCooldownSeconds() {
+        return cooldownSeconds;
+    }
+
+    // una generación por cooldown: quien no rompe nada con regla en dos seguidas sale
+    private void restartSweep(EconomyPlugin plugin) {
+        if (sweepTask != null) {
+            try { sweepTask.cancel(); } catch (Throwable ignored) {}
+            sweepTask = null;
+        }
+        if (cooldownSeconds <= 0) {
+            cooldowns.clear();
+            return;
+        }
+        long period = 20L * cooldownSeconds;
+        sweepTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
+            int evicted = cooldowns.sweep();
+            if (evicted > 0) {
+                plugin.getDebugLogger().fine("Biome cooldowns: " + evicted + " jugadores caducados; quedan "
+                        + cooldowns.getTrackedPlayers() + " (" + (cooldowns.footprintBytes() / 1024) + " KiB)");
+            }
+        }, period, period);
+    }
+
     /**
      * Carga las reglas desde la configuración del plugin.
      * Valida silenciosamente nombres inválidos de Biome o Material (los ignora).
      */
     public void loadConfig(EconomyPlugin plugin) {
-        rules.clear();
+        cooldownSeconds = Math.max(0, plugin.getConfig().getInt("biome_drop_cooldown_seconds", 5));
+        restartSweep(plugin);
+
+        Map<Biome, Map<Material, DropRule>> rules = new HashMap<>();
         ConfigurationSection root = plugin.getConfig().getConfigurationSection("biome_drops");
-        if (root == null) return;
+        if (root == null) {
+            compiled = compile(rules);
+            return;
+        }
 
         for (String biomeKey : root.getKeys(false)) {
             if (biomeKey == null) continue;
@@ -111,12 +178,41 @@ public class BiomeDropManager {
 
             if (!materialRules.isEmpty()) rules.put(biome, materialRules);
         }
+        compiled = compile(rules);
     }
 
-    public Optional<DropRule> getRule(Biome biome, Material material) {
-        Map<Material, DropRule> m = rules.get(biome);
-        if (m == null) return Optional.empty();
-        return Optional.ofNullable(m.get(material));
+    private static Compiled compile(Map<Biome, Map<Material, DropRule>> rules) {
+        int biomes = Biome.values().length;
+        DropRule[][] matrix = new DropRule[biomes][];
+        BitSet[] dropRules = new BitSet[biomes];
+        for (Map.Entry<Biome, Map<Material, DropRule>> e : rules.entrySet()) {
+            int b = e.getKey().ordinal();
+            matrix[b] = new DropRule[MATERIALS];
+            for (DropRule r : e.getValue().values()) {
+                matrix[b][r.material.ordinal()] = r;
+                // solo un item puede aparecer entre los drops de un bloque
+                if (!r.material.isItem()) continue;
+                if (dropRules[b] == null) dropRules[b] = new BitSet(MATERIALS);
+                dropRules[b].set(r.material.ordinal());
+            }
+        }
+        return new Compiled(matrix, dropRules);
+    }
+
+    /**
+     * Regla para el material en el bioma, o null si no hay.
+     */
+    public DropRule getRule(Biome biome, Material material) {
+        DropRule[] row = compiled.matrix[biome.ordinal()];
+        return row == null ? null : row[material.ordinal()];
+    }
+
+    /**
+     * Fila de reglas del bioma indexada por Material.ordinal(), o null si el bioma no
+     * tiene reglas. Para el listener: una consulta por evento y luego solo accesos a array.
+     */
+    public DropRule[] getRules(Biome biome) {
+        return compiled.matrix[biome.ordinal()];
     }
 
     /**
@@ -125,7 +221,16 @@ public class BiomeDropManager {
      * con los drops por defecto en ese bioma.
      */
     public boolean hasRulesForBiome(Biome biome) {
-        return rules.containsKey(biome);
+        return compiled.matrix[biome.ordinal()] != null;
+    }
+
+    /**
+     * Materiales con regla en el bioma que pueden salir como drop, o null si no hay
+     * ninguno: entonces un bloque sin regla propia no necesita calcular sus drops.
+     * Solo lectura.
+     */
+    public BitSet getDropRules(Biome biome) {
+        return compiled.dropRules[biome.ordinal()];
     }
 
 }
@@ -0,0 +1,253 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Codificación compacta de billetes en el PersistentDataContainer: una sola entrada
+ * binaria `helieco:helieco_bill` en lugar de cinco strings.
+ *
+ * Formato (big-endian):
+ * <pre>
+ *   byte   versión de formato (2)
+ *   short  longitud del landId en bytes UTF-8, seguida de los bytes
+ *   long   valor escalado (centésimas)
+ *   long   fechas empaquetadas: (epochDay emisión << 32) | epochDay vencimiento (-1 = sin vencimiento)
+ *   short  longitud del nombre del Material en bytes UTF-8 (0 = desconocido), seguida de los bytes
+ *   long   época de valoración (-1 = desconocida)
+ * </pre>
+ * El Material se guarda por nombre: los ordinales cambian entre versiones de Minecraft.
+ * La versión 1 guardaba el ordinal; al leerla se usa el tipo del item y se reescribe en
+ * la versión 2.
+ *
+ * Las claves se crean una sola vez. Solo se pide el ItemMeta (que es una copia) de items
+ * con meta y de un material de billete (`currency.default_item` y
+ * `currency.bill_materials`); el resto se descarta sin reservar memoria.
+ * Los billetes antiguos (cinco strings) se migran al formato compacto la primera vez
+ * que se leen.
+ */
+public class BillCodec {
+
+    public static final byte FORMAT_VERSION = 2;
+    private static final byte FORMAT_V1 = 1;
+    private static final int FIXED_SIZE = 1 + 2 + 8 + 8 + 2 + 8;
+
+    private final EconomyPlugin plugin;
+    // materiales con los que se emiten (o se emitieron) billetes
+    private volatile java.util.Set<Material> billMaterials = java.util.EnumSet.of(Material.PAPER);
+
+    private final NamespacedKey kBill;
+    // claves del formato antiguo, solo para migrar
+    private final NamespacedKey kLand;
+    private final NamespacedKey kValue;
+    private final NamespacedKey kIssue;
+    private final NamespacedKey kExpire;
+    private final NamespacedKey kMat;
+    private final NamespacedKey kEpoch;
+
+    public BillCodec(EconomyPlugin plugin) {
+        this.plugin = plugin;
+        this.kBill = plugin.key("helieco_bill");
+        this.kLand = plugin.key("helieco_bill_land");
+        this.kValue = plugin.key("helieco_bill_value");
+        this.kIssue = plugin.key("helieco_bill_issue");
+        this.kExpire = plugin.key("helieco_bill_expire");
+        this.kMat = plugin.key("helieco_bill_material");
+        this.kEpoch = plugin.key("helieco_bill_epoch");
+        loadConfig();
+    }
+
+    public void loadConfig() {
+        java.util.Set<Material> mats = java.util.EnumSet.noneOf(Material.class);
+        addMaterial(mats, plugin.getConfig().getString("currency.default_item", "PAPER"));
+        for (String name : plugin.getConfig().getStringList("currency.bill_materials")) addMaterial(mats, name);
+        if (mats.isEmpty()) mats.add(Material.PAPER);
+        billMaterials = mats;
+    }
+
+    private static void addMaterial(java.util.Set<Material> mats, String name) {
+        if (name == null) return;
+        try {
+            mats.add(Material.valueOf(name.toUpperCase()));
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    /**
+     * Lee un billete del item. Devuelve null si el item no es un billete.
+     * Si el billete está en el formato antiguo se reescribe en el compacto (el item
+     * se modifica en sitio).
+     */
+    public BillData read(ItemStack item) {
+        // getItemMeta() copia la meta: antes, los filtros baratos
+        if (item == null || !billMaterials.contains(item.getType()) || !item.hasItemMeta()) return null;
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return null;
+        PersistentDataContainer c = meta.getPersistentDataContainer();
+        byte[] raw = c.get(kBill, PersistentDataType.BYTE_ARRAY);
+        if (raw != null) {
+            BillData data = decode(raw, item);
+            if (data != null && raw[0] == FORMAT_V1) {
+                // ordinal de Material no fiable entre versiones: reescribir con el nombre
+                c.set(kBill, PersistentDataType.BYTE_ARRAY, encode(data));
+                item.setItemMeta(meta);
+            }
+            return data;
+        }
+        if (!c.has(kLand, PersistentDataType.STRING)) return null;
+
+        BillData legacy = readLegacy(c, item);
+        removeLegacy(c);
+        c.set(kBill, PersistentDataType.BYTE_ARRAY, encode(legacy));
+        item.setItemMeta(meta);
+        return legacy;
+    }
+
+    /**
+     * Escribe el billete en el item en formato compacto.
+     */
+    public void write(ItemStack item, BillData data) {
+        if (item == null) return;
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return;
+        write(meta, data);
+        item.setItemMeta(meta);
+    }
+
+    /**
+     * Escribe el billete en un ItemMeta ya obtenido (el llamador hace setItemMeta),
+     * para combinarlo con otros cambios de meta en un único round-trip.
+     */
+    public void write(ItemMeta meta, BillData data) {
+        PersistentDataContainer c = meta.getPersistentDataContainer();
+        c.set(kBill, PersistentDataType.BYTE_ARRAY, encode(data));
+        if (c.has(kLand, PersistentDataType.STRING)) removeLegacy(c);
+    }
+
+    public byte[] encode(BillData data) {
+        byte[] land = data.getLandId().getBytes(StandardCharsets.UTF_8);
+        byte[] mat = data.getMaterial() == null ? new byte[0] : data.getMaterial().getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[FIXED_SIZE + land.length + mat.length];
+        int p = 0;
+        out[p++] = FORMAT_VERSION;
+        p = putShort(out, p, land.length);
+        System.arraycopy(land, 0, out, p, land.length);
+        p += land.length;
+        p = putLong(out, p, data.getValue().movePointRight(2).longValue());
+        long issue = epochDay(data.getIssueDate(), LocalDate.now().toEpochDay());
+        long expire = epochDay(data.getExpireDate(), -1L);
+        p = putLong(out, p, (issue << 32) | (expire & 0xFFFFFFFFL));
+        p = putShort(out, p, mat.length);
+        System.arraycopy(mat, 0, out, p, mat.length);
+        p += mat.length;
+        putLong(out, p, data.getEpoch());
+        return out;
+    }
+
+    private BillData decode(byte[] raw, ItemStack item) {
+        if (raw.length < FIXED_SIZE || (raw[0] != FORMAT_VERSION && raw[0] != FORMAT_V1)) return null;
+        boolean v1 = raw[0] == FORMAT_V1;
+        int p = 1;
+        int landLen = getShort(raw, p);
+        p += 2;
+        if (raw.length < FIXED_SIZE + landLen) return null;
+        String landId = new String(raw, p, landLen, StandardCharsets.UTF_8);
+        p += landLen;
+        long scaled = getLong(raw, p);
+        p += 8;
+        long dates = getLong(raw, p);
+        p += 8;
+        int matLen = getShort(raw, p);
+        p += 2;
+        String material;
+        if (v1) {
+            // v1: ordinal de Material, que cambia entre versiones; el tipo del item es fiable
+            if (raw.length != FIXED_SIZE + landLen) return null;
+            material = item.getType().name();
+        } else {
+            if (raw.length != FIXED_SIZE + landLen + matLen) return null;
+            material = matLen == 0 ? item.getType().name() : new String(raw, p, matLen, StandardCharsets.UTF_8);
+            p += matLen;
+        }
+        long epoch = getLong(raw, p);
+
+        int issueDay = (int) (dates >>> 32);
+        int expireDay = (int) dates;
+        String issue = LocalDate.ofEpochDay(issueDay).toString();
+        String expire = expireDay < 0 ? "" : LocalDate.ofEpochDay(expireDay).toString();
+        return new BillData("", landId, java.math.BigDecimal.valueOf(scaled, 2), issue, expire, material, epoch);
+    }
+
+    private BillData readLegacy(PersistentDataContainer c, ItemStack item) {
+        String landId = c.get(kLand, PersistentDataType.STRING);
+        java.math.BigDecimal value;
+        if (c.has(kValue, PersistentDataType.STRING)) {
+            try {
+                value = new java.math.BigDecimal(c.get(kValue, PersistentDataType.STRING));
+            } catch (Exception e) {
+                value = java.math.BigDecimal.ZERO;
+            }
+        } else if (c.has(kValue, PersistentDataType.DOUBLE)) {
+            value = java.math.BigDecimal.valueOf(c.get(kValue, PersistentDataType.DOUBLE));
+        } else {
+            value = java.math.BigDecimal.ZERO;
+        }
+        String issue = c.has(kIssue, PersistentDataType.STRING) ? c.get(kIssue, PersistentDataType.STRING) : LocalDate.now().toString();
+        String expire = c.has(kExpire, PersistentDataType.STRING) ? c.get(kExpire, PersistentDataType.STRING) : "";
+        String material = c.has(kMat, PersistentDataType.STRING) ? c.get(kMat, PersistentDataType.STRING) : item.getType().name();
+        // Billetes anteriores a la valoración perezosa no tienen época: se tratan como desactualizados
+        long epoch = c.has(kEpoch, PersistentDataType.LONG) ? c.get(kEpoch, PersistentDataType.LONG) : -1L;
+        return new BillData("", landId, value, issue, expire, material, epoch);
+    }
+
+    private void removeLegacy(PersistentDataContainer c) {
+        c.remove(kLand);
+        c.remove(kValue);
+        c.remove(kIssue);
+        c.remove(kExpire);
+        c.remove(kMat);
+        c.remove(kEpoch);
+    }
+
+    private static long epochDay(String iso, long def) {
+        if (iso == null || iso.isEmpty()) return def;
+        try {
+            return LocalDate.parse(iso).toEpochDay();
+        } catch (Exception e) {
+            return def;
+        }
+    }
+
+    private static int putShort(byte[] b, int p, int v) {
+        b[p] = (byte) (v >>> 8);
+        b[p + 1] = (byte) v;
+        return p + 2;
+    }
+
+    private static int putLong(byte[] b, int p, long v) {
+        for (int i = 7; i >= 0; i--) {
+            b[p++] = (byte) (v >>> (i * 8));
+        }
+        return p;
+    }
+
+    private static int getShort(byte[] b, int p) {
+        return ((b[p] & 0xFF) << 8) | (b[p + 1] & 0xFF);
+    }
+
+    private static long getLong(byte[] b, int p) {
+        long v = 0L;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (b[p + i] & 0xFFL);
+        }
+        return v;
+    }
+}
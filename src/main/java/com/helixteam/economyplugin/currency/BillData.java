@@ -1,11 +1,7 @@
 package com.helixteam.economyplugin.currency;
 
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.NamespacedKey;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.persistence.PersistentDataContainer;
-import org.bukkit.persistence.PersistentDataType;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -20,14 +16,20 @@ public class BillData {
     private String issueDate; // ISO
     private String expireDate; // ISO
     private String material; // material used for bill item (e.g., PAPER)
+    private long epoch = -1L; // época de valoración con la que se estampó (-1 = desconocida)
 
     public BillData(String id, String landId, java.math.BigDecimal value, String issueDate, String expireDate, String material) {
+        this(id, landId, value, issueDate, expireDate, material, -1L);
+    }
+
+    public BillData(String id, String landId, java.math.BigDecimal value, String issueDate, String expireDate, String material, long epoch) {
         this.id = id;
         this.landId = landId;
         this.value = value == null ? java.math.BigDecimal.ZERO : value;
         this.issueDate = issueDate;
         this.expireDate = expireDate;
         this.material = material;
+        this.epoch = epoch;
     }
 
     public static BillData fromSection(ConfigurationSection sec) {
@@ -60,58 +62,21 @@ public class BillData {
     }
 
     /**
-     * Escribe los campos del billete en el ItemStack usando PersistentDataContainer.
+     * Escribe los campos del billete en el ItemStack usando PersistentDataContainer
+     * (una única entrada compacta, ver BillCodec).
      */
     public void writeToItem(ItemStack item, EconomyPlugin plugin) {
-        if (item == null) return;
-        ItemMeta meta = item.getItemMeta();
-        if (meta == null) return;
-        PersistentDataContainer c = meta.getPersistentDataContainer();
         // Do NOT write a unique id to allow stacking; detect bills by land id
-        c.set(plugin.key("helieco_bill_land"), PersistentDataType.STRING, landId);
-        // store as string in PDC to preserve precision
-        c.set(plugin.key("helieco_bill_value"), PersistentDataType.STRING, value.toPlainString());
-        c.set(plugin.key("helieco_bill_issue"), PersistentDataType.STRING, issueDate);
-        c.set(plugin.key("helieco_bill_expire"), PersistentDataType.STRING, expireDate == null ? "" : expireDate);
-        c.set(plugin.key("helieco_bill_material"), PersistentDataType.STRING, material);
-
-        item.setItemMeta(meta);
+        plugin.getBillCodec().write(item, this);
     }
 
     /**
      * Intenta leer un BillData desde un ItemStack que tenga los PDC correspondientes.
      * Devuelve null si no contiene la información necesaria.
+     * Los billetes en el formato antiguo se migran al compacto en esta lectura.
      */
     public static BillData fromItem(ItemStack item, EconomyPlugin plugin) {
-        if (item == null || item.getItemMeta() == null) return null;
-        ItemMeta meta = item.getItemMeta();
-        PersistentDataContainer c = meta.getPersistentDataContainer();
-
-        NamespacedKey kLand = plugin.key("helieco_bill_land");
-        NamespacedKey kValue = plugin.key("helieco_bill_value");
-        NamespacedKey kIssue = plugin.key("helieco_bill_issue");
-        NamespacedKey kExpire = plugin.key("helieco_bill_expire");
-        NamespacedKey kMat = plugin.key("helieco_bill_material");
-        if (!c.has(kLand, PersistentDataType.STRING)) return null;
-        String landId = c.get(kLand, PersistentDataType.STRING);
-        String id = "";
-        java.math.BigDecimal value;
-        if (c.has(kValue, PersistentDataType.STRING)) {
-            try {
-                value = new java.math.BigDecimal(c.get(kValue, PersistentDataType.STRING));
-            } catch (Exception e) {
-                value = java.math.BigDecimal.ZERO;
-            }
-        } else if (c.has(kValue, PersistentDataType.DOUBLE)) {
-            value = java.math.BigDecimal.valueOf(c.get(kValue, PersistentDataType.DOUBLE));
-        } else {
-            value = java.math.BigDecimal.ZERO;
-        }
-        String issue = c.has(kIssue, PersistentDataType.STRING) ? c.get(kIssue, PersistentDataType.STRING) : LocalDate.now().toString();
-        String expire = c.has(kExpire, PersistentDataType.STRING) ? c.get(kExpire, PersistentDataType.STRING) : "";
-        String material = c.has(kMat, PersistentDataType.STRING) ? c.get(kMat, PersistentDataType.STRING) : item.getType().name();
-
-        return new BillData(id, landId, value, issue, expire, material);
+        return plugin.getBillCodec().read(item);
     }
 
     public String getId() {
@@ -153,4 +118,12 @@ public class BillData {
     public void setMaterial(String material) {
         this.material = material;
     }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
 }
@@ -0,0 +1,235 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice incremental landId -> poseedores de billetes de esa Land (jugadores online,
+ * entidades Item y contenedores abiertos).
+ * Lo mantiene BillHolderListener a partir de eventos; refreshBillLore (modo eager)
+ * visita solo los poseedores conocidos, de modo que su coste es proporcional a la
+ * circulación y no a la población del servidor.
+ *
+ * Las entradas obsoletas (entidad destruida, jugador desconectado) se limpian solas
+ * cuando el refresh no consigue resolverlas.
+ */
+public class BillHolderIndex {
+
+    private final EconomyPlugin plugin;
+
+    // índice directo: land -> poseedores
+    private final ConcurrentHashMap<String, Set<UUID>> playersByLand = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<UUID>> itemsByLand = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Inventory>> containersByLand = new ConcurrentHashMap<>();
+
+    // índice inverso: poseedor -> lands, para poder retirar entradas sin recorrer todo
+    private final ConcurrentHashMap<UUID, Set<String>> landsByPlayer = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, String> landByItem = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Inventory, Set<String>> landsByContainer = new ConcurrentHashMap<>();
+
+    // re-indexado diferido: varios clicks en el mismo tick cuestan un único escaneo
+    private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    private final Set<Inventory> dirtyContainers = ConcurrentHashMap.newKeySet();
+    private volatile boolean drainScheduled = false;
+
+    public BillHolderIndex(EconomyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public Set<UUID> playersHolding(String landId) {
+        return snapshot(playersByLand.get(landId));
+    }
+
+    public Set<UUID> itemsHolding(String landId) {
+        return snapshot(itemsByLand.get(landId));
+    }
+
+    public Set<Inventory> containersHolding(String landId) {
+        return snapshot(containersByLand.get(landId));
+    }
+
+    /**
+     * Recorridos sin copia de los poseedores de una land, para reanudarlos entre ticks.
+     * Son débilmente consistentes: admiten altas y bajas mientras duran.
+     */
+    public Iterator<UUID> playersCursor(String landId) {
+        return cursor(playersByLand.get(landId));
+    }
+
+    public Iterator<UUID> itemsCursor(String landId) {
+        return cursor(itemsByLand.get(landId));
+    }
+
+    public Iterator<Inventory> containersCursor(String landId) {
+        return cursor(containersByLand.get(landId));
+    }
+
+    /**
+     * Vuelve a calcular qué lands tiene el jugador escaneando solo su inventario.
+     */
+    public void reindexPlayer(Player player) {
+        if (player == null) return;
+        Set<String> now = landsIn(player.getInventory());
+        Set<String> before = now.isEmpty() ? landsByPlayer.remove(player.getUniqueId()) : landsByPlayer.put(player.getUniqueId(), now);
+        move(playersByLand, player.getUniqueId(), before, now);
+    }
+
+    public void removePlayer(UUID playerId) {
+        dirtyPlayers.remove(playerId);
+        Set<String> before = landsByPlayer.remove(playerId);
+        move(playersByLand, playerId, before, Collections.emptySet());
+    }
+
+    /**
+     * Registra (o retira) una entidad Item según contenga o no un billete.
+     */
+    public void trackItem(Item item) {
+        if (item == null) return;
+        BillData bd = BillData.fromItem(item.getItemStack(), plugin);
+        if (bd == null) {
+            removeItem(item.getUniqueId());
+            return;
+        }
+        String prev = landByItem.put(item.getUniqueId(), bd.getLandId());
+        if (prev != null && !prev.equals(bd.getLandId())) remove(itemsByLand, prev, item.getUniqueId());
+        itemsByLand.computeIfAbsent(bd.getLandId(), k -> ConcurrentHashMap.newKeySet()).add(item.getUniqueId());
+    }
+
+    public void removeItem(UUID entityId) {
+        String land = landByItem.remove(entityId);
+        if (land != null) remove(itemsByLand, land, entityId);
+    }
+
+    /**
+     * Vuelve a calcular qué lands contiene un contenedor abierto.
+     */
+    public void reindexContainer(Inventory inv) {
+        if (inv == null) return;
+        Set<String> now = landsIn(inv);
+        Set<String> before = now.isEmpty() ? landsByContainer.remove(inv) : landsByContainer.put(inv, now);
+        move(containersByLand, inv, before, now);
+    }
+
+    public void removeContainer(Inventory inv) {
+        if (inv == null) return;
+        dirtyContainers.remove(inv);
+        Set<String> before = landsByContainer.remove(inv);
+        move(containersByLand, inv, before, Collections.emptySet());
+    }
+
+    public boolean isTrackedContainer(Inventory inv) {
+        return inv != null && landsByContainer.containsKey(inv);
+    }
+
+    /**
+     * Marca un jugador para re-indexar en el próximo tick.
+     */
+    public void markPlayerDirty(Player player) {
+        if (player == null) return;
+        dirtyPlayers.add(player.getUniqueId());
+        scheduleDrain();
+    }
+
+    /**
+     * Marca un contenedor para re-indexar en el próximo tick.
+     */
+    public void markContainerDirty(Inventory inv) {
+        if (inv == null) return;
+        dirtyContainers.add(inv);
+        scheduleDrain();
+    }
+
+    /**
+     * Reconstrucción completa (jugadores online y entidades Item cargadas). Solo se usa
+     * al activar el plugin o al pasar a modo eager en un reload.
+     */
+    public void rebuild() {
+        clear();
+        for (Player p : plugin.getServer().getOnlinePlayers()) reindexPlayer(p);
+        for (World w : plugin.getServer().getWorlds()) {
+            for (Entity e : w.getEntities()) {
+                if (e instanceof Item) trackItem((Item) e);
+            }
+        }
+        plugin.getDebugLogger().fine("BillHolderIndex rebuilt: players=" + landsByPlayer.size() + " items=" + landByItem.size());
+    }
+
+    public void clear() {
+        playersByLand.clear();
+        itemsByLand.clear();
+        containersByLand.clear();
+        landsByPlayer.clear();
+        landByItem.clear();
+        landsByContainer.clear();
+        dirtyPlayers.clear();
+        dirtyContainers.clear();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled) return;
+        drainScheduled = true;
+        plugin.getServer().getScheduler().runTask(plugin, this::drain);
+    }
+
+    private void drain() {
+        drainScheduled = false;
+        for (UUID id : new HashSet<>(dirtyPlayers)) {
+            dirtyPlayers.remove(id);
+            Player p = plugin.getServer().getPlayer(id);
+            if (p == null) removePlayer(id);
+            else reindexPlayer(p);
+        }
+        for (Inventory inv : new HashSet<>(dirtyContainers)) {
+            dirtyContainers.remove(inv);
+            reindexContainer(inv);
+        }
+    }
+
+    private Set<String> landsIn(Inventory inv) {
+        Set<String> out = new HashSet<>();
+        for (ItemStack it : inv.getContents()) {
+            if (it == null) continue;
+            BillData bd = BillData.fromItem(it, plugin);
+            if (bd != null) out.add(bd.getLandId());
+        }
+        return out;
+    }
+
+    private static <K> void move(ConcurrentHashMap<String, Set<K>> index, K holder, Set<String> before, Set<String> now) {
+        if (before != null) {
+            for (String land : before) {
+                if (!now.contains(land)) remove(index, land, holder);
+            }
+        }
+        for (String land : now) {
+            index.computeIfAbsent(land, k -> ConcurrentHashMap.newKeySet()).add(holder);
+        }
+    }
+
+    private static <K> void remove(ConcurrentHashMap<String, Set<K>> index, String land, K holder) {
+        index.computeIfPresent(land, (k, set) -> {
+            set.remove(holder);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static <K> Iterator<K> cursor(Set<K> set) {
+        return set == null ? Collections.emptyIterator() : set.iterator();
+    }
+
+    private static <K> Set<K> snapshot(Set<K> set) {
+        return set == null ? Collections.emptySet() : new HashSet<>(set);
+    }
+}
@@ -0,0 +1,151 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.ItemDespawnEvent;
+import org.bukkit.event.entity.ItemMergeEvent;
+import org.bukkit.event.entity.ItemSpawnEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.PlayerInventory;
+
+/**
+ * Mantiene BillHolderIndex al día: recogidas, drops, clicks/arrastres en inventarios,
+ * spawn/despawn/merge de items, entrada/salida de jugadores y carga/descarga de las
+ * entidades de un chunk.
+ * Solo trabaja en modo eager; en modo lazy el índice no se usa.
+ */
+public class BillHolderListener implements Listener {
+
+    private final EconomyPlugin plugin;
+
+    public BillHolderListener(EconomyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        var index = index();
+        if (index != null) index.reindexPlayer(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        var index = index();
+        if (index != null) index.removePlayer(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent event) {
+        var index = index();
+        if (index == null) return;
+        // si se recoge solo parte del stack la entidad sigue existiendo y se resuelve en el refresh
+        if (event.getRemaining() <= 0) index.removeItem(event.getItem().getUniqueId());
+        if (event.getEntity() instanceof Player) index.markPlayerDirty((Player) event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrop(PlayerDropItemEvent event) {
+        var index = index();
+        if (index == null) return;
+        index.trackItem(event.getItemDrop());
+        index.markPlayerDirty(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClick(InventoryClickEvent event) {
+        onInventoryChange(event.getWhoClicked() instanceof Player ? (Player) event.getWhoClicked() : null, event.getView().getTopInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrag(InventoryDragEvent event) {
+        onInventoryChange(event.getWhoClicked() instanceof Player ? (Player) event.getWhoClicked() : null, event.getView().getTopInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onOpen(InventoryOpenEvent event) {
+        var index = index();
+        if (index == null) return;
+        Inventory top = event.getInventory();
+        if (isContainer(top)) index.reindexContainer(top);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClose(InventoryCloseEvent event) {
+        var index = index();
+        if (index == null) return;
+        Inventory top = event.getInventory();
+        // el jugador que cierra todavía figura entre los viewers
+        if (index.isTrackedContainer(top) && top.getViewers().size() <= 1) index.removeContainer(top);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemSpawn(ItemSpawnEvent event) {
+        var index = index();
+        if (index != null) index.trackItem(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemDespawn(ItemDespawnEvent event) {
+        var index = index();
+        if (index != null) index.removeItem(event.getEntity().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemMerge(ItemMergeEvent event) {
+        var index = index();
+        if (index == null) return;
+        // el origen desaparece; el destino ya estaba indexado (solo se fusionan stacks similares)
+        index.removeItem(event.getEntity().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        var index = index();
+        if (index == null) return;
+        for (Entity e : event.getEntities()) {
+            if (e instanceof Item) index.trackItem((Item) e);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        var index = index();
+        if (index == null) return;
+        for (Entity e : event.getEntities()) {
+            if (e instanceof Item) index.removeItem(e.getUniqueId());
+        }
+    }
+
+    private void onInventoryChange(Player who, Inventory top) {
+        var index = index();
+        if (index == null) return;
+        if (who != null) index.markPlayerDirty(who);
+        if (isContainer(top)) index.markContainerDirty(top);
+    }
+
+    private static boolean isContainer(Inventory inv) {
+        // inventario propio / crafting del jugador: lo cubre el re-indexado del jugador
+        return inv != null && !(inv instanceof PlayerInventory) && inv.getHolder() != null && !(inv.getHolder() instanceof Player);
+    }
+
+    private BillHolderIndex index() {
+        var cm = plugin.getCurrencyManager();
+        if (cm == null || cm.isLazyRefresh()) return null;
+        return cm.getHolderIndex();
+    }
+}
@@ -23,25 +23,19 @@ public class BillItemFactory {
         String landId = currency.getLandId();
         String issue = LocalDate.now().toString();
         String expire = expireDate == null ? "" : expireDate.toString();
-        BillData data = new BillData("", landId, value, issue, expire, mat.name());
+        // Estampar con la época actual para que no se considere desactualizado al tocarlo;
+        // época y nombre salen del mismo estado
+        LandCurrency.State st = currency.state();
+        BillData data = new BillData("", landId, value, issue, expire, mat.name(), st.version());
 
-        // Poner display name y lore (legible) y guardar en PDC
+        // Poner display name y lore (plantilla cacheada por land) y guardar en PDC
         var meta = item.getItemMeta();
         if (meta != null) {
-            String pretty = value == null ? "0" : value.stripTrailingZeros().toPlainString();
-            // Display name debe ser solo el nombre de la moneda
-            meta.setDisplayName(currency.getName() == null || currency.getName().isEmpty() ? "Land" : currency.getName());
-            java.util.List<String> lore = new java.util.ArrayList<>();
-            lore.add("Emisor: " + (currency.getName() == null || currency.getName().isEmpty() ? "-" : currency.getName()));
-            lore.add("Valor: " + pretty);
-            if (!expire.isEmpty()) lore.add("Vence: " + expire);
-            meta.setLore(lore);
+            plugin.getCurrencyManager().getRenderCache().template(landId, st, value, expire).applyTo(meta);
+            plugin.getBillCodec().write(meta, data);
             item.setItemMeta(meta);
         }
 
-        // Escribir datos en PDC
-        data.writeToItem(item, plugin);
-
         // No registrar cada billete individualmente; el contador se gestiona en CurrencyManager/CurrencyCommands
 
         return item;
@@ -0,0 +1,227 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Motor de refresco de billetes (modo eager) repartido entre ticks.
+ *
+ * requestRefresh solo marca la land como sucia. En cada tick, si no hay una pasada en
+ * curso, se toman todas las lands sucias y se abre una única pasada sobre la unión de
+ * sus poseedores: cada jugador, item en el suelo o contenedor abierto se visita una sola
+ * vez y en esa visita se actualizan los billetes de todas las lands sucias. Así, un sync
+ * periódico de miles de lands cuesta un recorrido y no miles.
+ *
+ * La pasada recorre el índice de poseedores con un cursor por land (jugadores, items,
+ * contenedores) y resuelve cada poseedor (getPlayer/getEntity) dentro del presupuesto
+ * `currency.bills.refresh_budget_ms` por tick; el cursor se reanuda en el siguiente. Las
+ * lands que se ensucian durante una pasada entran en la siguiente.
+ *
+ * requestRefresh puede llamarse desde hilos async (sync periódico): el conjunto de
+ * lands sucias es concurrente y solo el hilo principal lo vacía.
+ */
+public class BillRefreshScheduler {
+
+    private final EconomyPlugin plugin;
+    private final CurrencyManager manager;
+
+    // landId -> instante (ms) de la primera petición aún no recogida
+    private final ConcurrentHashMap<String, Long> dirty = new ConcurrentHashMap<>();
+    // pasada en curso; solo se toca desde el hilo principal
+    private Pass pass = null;
+    private org.bukkit.scheduler.BukkitTask task = null;
+    private volatile long budgetNanos = 2_000_000L;
+
+    // métricas publicadas al final de cada tick para lectores de otros hilos
+    private volatile int queueDepth = 0;
+    private volatile long lagMillis = 0L;
+
+    private static final class Pass {
+        final Set<String> lands;
+        final long oldestRequest;
+        final ArrayDeque<String> remaining;
+        // land en curso, fase (0 jugadores, 1 items, 2 contenedores) y cursor en el índice
+        String current = null;
+        int phase = 0;
+        Iterator<?> cursor = null;
+        // cada poseedor una sola vez por pasada aunque tenga billetes de varias lands
+        final Set<UUID> seenPlayers = new HashSet<>();
+        final Set<UUID> seenItems = new HashSet<>();
+        final Set<Inventory> seenContainers = new HashSet<>();
+        int visited = 0;
+
+        Pass(Set<String> lands, long oldestRequest) {
+            this.lands = lands;
+            this.oldestRequest = oldestRequest;
+            this.remaining = new ArrayDeque<>(lands);
+        }
+    }
+
+    public BillRefreshScheduler(EconomyPlugin plugin, CurrencyManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+    }
+
+    public void start() {
+        stop();
+        double ms = plugin.getConfig().getDouble("currency.bills.refresh_budget_ms", 2.0);
+        if (Double.isNaN(ms) || ms <= 0.0) ms = 2.0;
+        budgetNanos = (long) (ms * 1_000_000L);
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            try { task.cancel(); } catch (Throwable ignored) {}
+            task = null;
+        }
+    }
+
+    /**
+     * Marca una land como sucia. Seguro desde cualquier hilo.
+     */
+    public void request(String landId) {
+        dirty.putIfAbsent(landId, System.currentTimeMillis());
+    }
+
+    /**
+     * Refresca una land por completo en este mismo tick (sin presupuesto).
+     */
+    public void runNow(String landId) {
+        Pass p = new Pass(Collections.singleton(landId), System.currentTimeMillis());
+        while (step(p)) {
+            // sin presupuesto
+        }
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    private void tick() {
+        if (pass == null && dirty.isEmpty()) return;
+        long start = System.nanoTime();
+        while (true) {
+            if (pass == null) {
+                pass = takeDirty();
+                if (pass == null) break;
+            }
+            boolean more;
+            try {
+                more = step(pass);
+            } catch (Throwable t) {
+                plugin.getLogger().warning("Error refrescando billetes: " + t.getMessage());
+                more = true;
+            }
+            if (!more) {
+                plugin.getDebugLogger().fine("Bill refresh pass done: lands=" + pass.lands.size() + " holders=" + pass.visited
+                        + " lag=" + (System.currentTimeMillis() - pass.oldestRequest) + "ms");
+                pass = null;
+                // las lands ensuciadas durante la pasada esperan al siguiente tick
+                break;
+            }
+            if (System.nanoTime() - start >= budgetNanos) break;
+        }
+        publishMetrics();
+    }
+
+    private Pass takeDirty() {
+        if (dirty.isEmpty()) return null;
+        Set<String> lands = new HashSet<>();
+        long oldest = Long.MAX_VALUE;
+        for (String landId : new ArrayList<>(dirty.keySet())) {
+            Long at = dirty.remove(landId);
+            if (at == null) continue;
+            lands.add(landId);
+            oldest = Math.min(oldest, at);
+        }
+        if (lands.isEmpty()) return null;
+        return new Pass(lands, oldest);
+    }
+
+    /**
+     * Visita el siguiente poseedor de la pasada. Devuelve false cuando ya no quedan.
+     * Los poseedores ya visitados por otra land se saltan sin resolverlos.
+     */
+    private boolean step(Pass p) {
+        BillHolderIndex index = manager.getHolderIndex();
+        while (true) {
+            if (p.cursor != null && p.cursor.hasNext()) {
+                Object holder = p.cursor.next();
+                if (visit(p, index, holder)) {
+                    p.visited++;
+                    return true;
+                }
+                continue;
+            }
+            if (p.current != null && p.phase < 2) {
+                p.phase++;
+            } else {
+                p.current = p.remaining.poll();
+                if (p.current == null) return false;
+                p.phase = 0;
+            }
+            switch (p.phase) {
+                case 0: p.cursor = index.playersCursor(p.current); break;
+                case 1: p.cursor = index.itemsCursor(p.current); break;
+                default: p.cursor = index.containersCursor(p.current); break;
+            }
+        }
+    }
+
+    // false si el poseedor ya se visitó en esta pasada
+    private boolean visit(Pass p, BillHolderIndex index, Object holder) {
+        switch (p.phase) {
+            case 0: {
+                UUID pid = (UUID) holder;
+                if (!p.seenPlayers.add(pid)) return false;
+                Player pl = plugin.getServer().getPlayer(pid);
+                if (pl == null) index.removePlayer(pid);
+                else manager.refreshPlayerBills(pl, p.lands);
+                return true;
+            }
+            case 1: {
+                UUID eid = (UUID) holder;
+                if (!p.seenItems.add(eid)) return false;
+                Entity e = plugin.getServer().getEntity(eid);
+                if (!(e instanceof Item) || !e.isValid()) index.removeItem(eid);
+                else manager.refreshItemBill((Item) e, p.lands);
+                return true;
+            }
+            default: {
+                Inventory inv = (Inventory) holder;
+                if (!p.seenContainers.add(inv)) return false;
+                manager.refreshContainerBills(inv, p.lands);
+                return true;
+            }
+        }
+    }
+
+    private void publishMetrics() {
+        int depth = dirty.size();
+        long oldest = Long.MAX_VALUE;
+        if (pass != null) {
+            depth += pass.remaining.size() + (pass.current != null ? 1 : 0);
+            oldest = pass.oldestRequest;
+        }
+        for (Long at : dirty.values()) oldest = Math.min(oldest, at);
+        queueDepth = depth;
+        lagMillis = oldest == Long.MAX_VALUE ? 0L : System.currentTimeMillis() - oldest;
+    }
+}
@@ -0,0 +1,86 @@
+package com.helixteam.economyplugin.currency;
+
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché por Land de las plantillas de presentación de billetes (nombre y lore).
+ * Una plantilla depende de (land, nombre, valor, vencimiento): se construye una vez y
+ * se aplica a todos los stacks que coinciden, sin volver a formatear el valor ni crear
+ * listas de lore por cada item.
+ * Un cambio de nombre o de valor descarta todas las plantillas de la land.
+ */
+public class BillRenderCache {
+
+    /**
+     * Nombre y lore listos para aplicar a un ItemMeta.
+     */
+    public static final class Template {
+        private final String displayName;
+        private final List<String> lore;
+
+        private Template(String displayName, List<String> lore) {
+            this.displayName = displayName;
+            this.lore = lore;
+        }
+
+        public void applyTo(ItemMeta meta) {
+            meta.setDisplayName(displayName);
+            meta.setLore(lore);
+        }
+    }
+
+    private static final class LandEntry {
+        final String name;
+        final java.math.BigDecimal value;
+        // vencimiento ISO ("" = sin vencimiento) -> plantilla
+        final ConcurrentHashMap<String, Template> byExpire = new ConcurrentHashMap<>();
+
+        LandEntry(String name, java.math.BigDecimal value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        boolean matches(String name, java.math.BigDecimal value) {
+            return Objects.equals(this.name, name) && this.value.compareTo(value) == 0;
+        }
+    }
+
+    private final ConcurrentHashMap<String, LandEntry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Devuelve la plantilla para un billete de la land con el valor y vencimiento dados.
+     * El nombre sale del mismo estado del que el llamador sacó valor y época.
+     */
+    public Template template(String landId, LandCurrency.State st, java.math.BigDecimal value, String expireDate) {
+        String name = st.name();
+        java.math.BigDecimal v = value == null ? java.math.BigDecimal.ZERO : value;
+        LandEntry entry = entries.get(landId);
+        if (entry == null || !entry.matches(name, v)) {
+            entry = new LandEntry(name, v);
+            entries.put(landId, entry);
+        }
+        String expire = expireDate == null ? "" : expireDate;
+        return entry.byExpire.computeIfAbsent(expire, e -> build(name, v, e));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private static Template build(String name, java.math.BigDecimal value, String expire) {
+        String pretty = value.stripTrailingZeros().toPlainString();
+        // Display name must be only the currency name
+        String displayName = name == null || name.isEmpty() ? "Land" : name;
+        List<String> lore = new ArrayList<>(3);
+        lore.add("Emisor: " + (name == null || name.isEmpty() ? "-" : name));
+        lore.add("Valor: " + pretty);
+        if (!expire.isEmpty()) lore.add("Vence: " + expire);
+        return new Template(displayName, Collections.unmodifiableList(lore));
+    }
+}
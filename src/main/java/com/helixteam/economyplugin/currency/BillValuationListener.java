@@ -0,0 +1,158 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.Tag;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.ShulkerBox;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.BlockStateMeta;
+
+/**
+ * Valoración perezosa de billetes: cuando un billete se toca (se sostiene, se abre el
+ * inventario que lo contiene o se recoge del suelo) se compara su época con la de su
+ * Land y solo entonces se reescriben valor y lore.
+ * Así un cambio en el banco cuesta O(1) en lugar de recorrer todos los inventarios.
+ *
+ * Además, en cualquier modo, reconcilia los billetes que quedaron desactualizados
+ * mientras su poseedor no estaba cargado: al entrar un jugador (inventario y ender
+ * chest), al cargarse un chunk (contenedores), al cargarse sus entidades (items en el
+ * suelo) y al abrir un inventario. Las shulker boxes guardadas como item se revisan un
+ * nivel hacia dentro. Cada carga paga solo por los items que trae.
+ *
+ * En las cargas de chunk y de entidades no se lee del repositorio en el hilo principal:
+ * solo se re-estampan billetes de lands ya en memoria; las demás se cargan en segundo
+ * plano y sus billetes se actualizan al tocarse (abrir, recoger, sostener).
+ */
+public class BillValuationListener implements Listener {
+
+    private final EconomyPlugin plugin;
+
+    public BillValuationListener(EconomyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemHeld(PlayerItemHeldEvent event) {
+        if (!lazy()) return;
+        var inv = event.getPlayer().getInventory();
+        int slot = event.getNewSlot();
+        ItemStack it = inv.getItem(slot);
+        if (plugin.getCurrencyManager().restampBill(it)) inv.setItem(slot, it);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent event) {
+        if (!lazy()) return;
+        var itemEntity = event.getItem();
+        ItemStack it = itemEntity.getItemStack();
+        if (plugin.getCurrencyManager().restampBill(it)) itemEntity.setItemStack(it);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryOpen(InventoryOpenEvent event) {
+        if (!ready()) return;
+        restampInventory(event.getInventory());
+        if (event.getPlayer() instanceof Player) {
+            restampInventory(((Player) event.getPlayer()).getInventory());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        if (!ready()) return;
+        Player p = event.getPlayer();
+        restampInventory(p.getInventory());
+        restampInventory(p.getEnderChest());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (!ready() || event.isNewChunk()) return;
+        // sin snapshot: se trabaja sobre el inventario real del contenedor
+        for (BlockState state : event.getChunk().getTileEntities(false)) {
+            if (state instanceof Container) restampInventory(((Container) state).getInventory(), true);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        if (!ready()) return;
+        var cm = plugin.getCurrencyManager();
+        for (Entity e : event.getEntities()) {
+            if (!(e instanceof Item)) continue;
+            Item ie = (Item) e;
+            ItemStack it = ie.getItemStack();
+            if (cm.restampBillIfLoaded(it) || restampShulker(it, true)) ie.setItemStack(it);
+        }
+    }
+
+    private void restampInventory(Inventory inv) {
+        restampInventory(inv, false);
+    }
+
+    // onlyLoaded: no cargar monedas del repositorio en este hilo
+    private void restampInventory(Inventory inv, boolean onlyLoaded) {
+        if (inv == null) return;
+        for (int i = 0; i < inv.getSize(); i++) {
+            ItemStack it = inv.getItem(i);
+            if (it == null) continue;
+            if (restamp(it, onlyLoaded) || restampShulker(it, onlyLoaded)) inv.setItem(i, it);
+        }
+    }
+
+    private boolean restamp(ItemStack it, boolean onlyLoaded) {
+        var cm = plugin.getCurrencyManager();
+        return onlyLoaded ? cm.restampBillIfLoaded(it) : cm.restampBill(it);
+    }
+
+    /**
+     * Re-estampa los billetes guardados dentro de una shulker box en forma de item.
+     */
+    private boolean restampShulker(ItemStack it, boolean onlyLoaded) {
+        if (!Tag.SHULKER_BOXES.isTagged(it.getType()) || !it.hasItemMeta()) return false;
+        var meta = it.getItemMeta();
+        if (!(meta instanceof BlockStateMeta)) return false;
+        BlockStateMeta bsm = (BlockStateMeta) meta;
+        if (!bsm.hasBlockState()) return false;
+        BlockState state = bsm.getBlockState();
+        if (!(state instanceof ShulkerBox)) return false;
+        ShulkerBox box = (ShulkerBox) state;
+        Inventory inner = box.getInventory();
+        boolean changed = false;
+        for (int i = 0; i < inner.getSize(); i++) {
+            ItemStack in = inner.getItem(i);
+            if (in == null) continue;
+            if (restamp(in, onlyLoaded)) {
+                inner.setItem(i, in);
+                changed = true;
+            }
+        }
+        if (!changed) return false;
+        bsm.setBlockState(box);
+        it.setItemMeta(bsm);
+        return true;
+    }
+
+    private boolean ready() {
+        return plugin.getCurrencyManager() != null;
+    }
+
+    private boolean lazy() {
+        var cm = plugin.getCurrencyManager();
+        return cm != null && cm.isLazyRefresh();
+    }
+}
@@ -7,6 +7,8 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import org.bukkit.inventory.ItemStack;
 import me.angeschossen.lands.api.LandsIntegration;
 import java.lang.reflect.Method;
@@ -52,6 +54,7 @@ public class CurrencyCommands implements CommandExecutor {
                         return true;
                     }
                     String name = args[1];
+                    if (!nameFits(player, cm, name)) return true;
                     // Obtener land id (string) - puede ser UUID, ULID, etc.
                     String landId = tryGetLandOfPlayer(player);
                     if (landId == null) {
@@ -61,7 +64,7 @@ public class CurrencyCommands implements CommandExecutor {
 
                     var lc = cm.getOrCreate(landId);
                     lc.setName(name);
-                    cm.save(lc);
+                    cm.save(lc, CurrencyJournal.Op.RENAME);
                     plugin.getLogger().info("Created/updated LandCurrency for land " + landId + " (name=" + name + ")");
                     player.sendMessage("Moneda creada/actualizada para la Land: " + name);
                     return true;
@@ -109,14 +112,19 @@ public class CurrencyCommands implements CommandExecutor {
                     cm.runLocked(landId, () -> {
                         // Reobtener lc y bank dentro del lock para consistencia
                         var innerLc = cm.getOrCreate(landId);
-                        java.math.BigDecimal innerBank = innerLc.getBankBalance();
-                        int currentIssued2 = innerLc.getIssuedCount();
+                        var innerState = innerLc.state();
+                        java.math.BigDecimal innerBank = innerState.bankBalance();
+                        int currentIssued2 = innerState.issuedCount();
                         int totalCirculating2 = currentIssued2 + count;
                         java.math.BigDecimal valuePer2 = java.math.BigDecimal.ZERO;
                         if (totalCirculating2 > 0) {
                             valuePer2 = innerBank.divide(java.math.BigDecimal.valueOf(totalCirculating2), 2, java.math.RoundingMode.DOWN);
                         }
 
+                        // Registrar la emisión en el contador de la Land antes de crear los billetes,
+                        // así quedan estampados con la época posterior a la emisión
+                        innerLc.addIssued(count);
+
                         var factory = new BillItemFactory();
                         boolean droppedAny = false;
 
@@ -140,10 +148,10 @@ public class CurrencyCommands implements CommandExecutor {
                         if (droppedAny) {
                             player.sendMessage("Inventario lleno: algunos billetes fueron soltados en el suelo.");
                         }
+                        // addItem no dispara eventos: registrar al jugador como poseedor
+                        if (!cm.isLazyRefresh()) cm.getHolderIndex().reindexPlayer(player);
 
-                        // Registrar la emisión en el contador de la Land
-                        innerLc.addIssued(count);
-                        cm.save(innerLc);
+                        cm.save(innerLc, CurrencyJournal.Op.EMIT);
                         // Solicitar refresh debounced para propagar lore/PDC actualizado
                         cm.requestRefresh(landId);
                         player.sendMessage("Emitidos " + count + " billetes (valor por billete: " + valuePer2 + ")");
@@ -159,11 +167,19 @@ public class CurrencyCommands implements CommandExecutor {
                     // sincronizar antes de mostrar info
                     cm.syncFromLands(landId);
                     var lc = cm.getOrCreate(landId);
-                    player.sendMessage("Moneda: " + lc.getName());
-                    player.sendMessage("Banco: " + lc.getBankBalance());
-                    player.sendMessage("Billetes en circulación: " + lc.getIssuedCount());
+                    var st = lc.state();
+                    player.sendMessage("Moneda: " + st.name());
+                    player.sendMessage("Banco: " + st.bankBalance());
+                    player.sendMessage("Billetes en circulación: " + st.issuedCount());
                     return true;
                 }
+                case "stats": {
+                    if (!player.isOp() && !player.hasPermission("helieco.admin")) {
+                        player.sendMessage("No tienes permiso (se requiere OP o permiso helieco.admin).");
+                        return true;
+                    }
+                    return showStats(player, cm);
+                }
                 case "rename": {
                     // Two modes:
                     // - /landcurrency rename <nuevo_nombre>              -> owner renames their own land
@@ -193,160 +209,50 @@ public class CurrencyCommands implements CommandExecutor {
                         landId = args[1];
                         newName = args[2];
                     }
+                    if (!nameFits(player, cm, newName)) return true;
 
                     var lc = cm.getOrCreate(landId);
                     String old = lc.getName();
                     lc.setName(newName);
-                    cm.save(lc);
+                    cm.save(lc, CurrencyJournal.Op.RENAME);
                     cm.requestRefresh(landId);
                     player.sendMessage("Moneda renombrada a: " + newName + (old == null || old.isEmpty() ? "" : " (antes: " + old + ")"));
                     plugin.getLogger().info("Renamed LandCurrency for land " + landId + " -> " + newName + " (was: " + old + ")");
                     return true;
                 }
-                case "redeem": {
-                    // Redeem the bill in player's main hand
-                    var item = player.getInventory().getItemInMainHand();
-                    var bd = BillData.fromItem(item, plugin);
-                    if (bd == null) {
-                        player.sendMessage("No hay un billete válido en la mano.");
-                        return true;
-                    }
-                    String landId = bd.getLandId();
-
-                    // Check expiry: only allow redeem if the bill has an expiration date AND it is already expired
-                    if (bd.getExpireDate() == null || bd.getExpireDate().isEmpty()) {
-                        player.sendMessage("Este billete no tiene fecha de vencimiento y no puede canjearse hasta que expire.");
+                case "redeem":
+                case "forceredeem": {
+                    boolean force = sub.equals("forceredeem");
+                    // Solo operadores pueden forzar el canje
+                    if (force && !player.isOp() && !player.hasPermission("helieco.forceredeem")) {
+                        player.sendMessage("No tienes permiso para forzar el canje (se requiere OP o permiso helieco.forceredeem).");
                         return true;
                     }
-                    LocalDate exp = LocalDate.parse(bd.getExpireDate());
-                    // If expiration is today or in the future, it's NOT yet expired -> disallow
-                    if (!exp.isBefore(LocalDate.now())) {
-                        player.sendMessage("El billete aún no ha vencido. Solo puede canjearse después de la fecha de vencimiento: " + bd.getExpireDate());
+                    // /landcurrency redeem [stack|all]
+                    String mode = args.length >= 2 ? args[1].toLowerCase() : "one";
+                    if (!mode.equals("one") && !mode.equals("stack") && !mode.equals("all")) {
+                        player.sendMessage("Uso: /landcurrency " + sub + " [stack|all]");
                         return true;
                     }
-
-                    // Antes de canjear, sincronizar desde Lands (traer balance actual)
-                    cm.syncFromLands(landId);
-
-                    // Ejecutar canje bajo lock para evitar races y asegurar atomicidad local
-                    cm.runLocked(landId, () -> {
-                        var innerLc = cm.getOrCreate(landId);
-                        int totalBefore2 = innerLc.getIssuedCount();
-                        if (totalBefore2 <= 0) {
-                            player.sendMessage("Error: no hay billetes registrados para esta Land.");
-                            return;
-                        }
-                        java.math.BigDecimal value2 = java.math.BigDecimal.ZERO;
-                        try {
-                            value2 = innerLc.getBankBalance().divide(java.math.BigDecimal.valueOf(totalBefore2), 2, java.math.RoundingMode.DOWN);
-                        } catch (ArithmeticException ex) {
-                            value2 = java.math.BigDecimal.ZERO;
-                        }
-
-                        // Restar del banco (reserva efectiva al canjear)
-                        innerLc.setBankBalance(innerLc.getBankBalance().subtract(value2));
-                        // Remover bill del registro
-                        innerLc.removeOneIssued();
-                        cm.save(innerLc);
-
-                        // Intentar pagar al jugador y comprobar resultado
-                        try {
-                            EconomyResponse resp = plugin.getEconomy().depositPlayer(player, value2.doubleValue());
-                            if (resp == null || !resp.transactionSuccess()) {
-                                // Revertir cambios en caso de fallo al pagar
-                                innerLc.setBankBalance(innerLc.getBankBalance().add(value2));
-                                innerLc.addIssued(1);
-                                cm.save(innerLc);
-                                player.sendMessage("Error al pagar. Operación revertida.");
-                                return;
-                            }
-                        } catch (Throwable ex) {
-                            innerLc.setBankBalance(innerLc.getBankBalance().add(value2));
-                            innerLc.addIssued(1);
-                            cm.save(innerLc);
-                            player.sendMessage("Error al pagar (exception). Operación revertida.");
-                            plugin.getLogger().severe("Error pagando billete: " + ex.getMessage());
-                            return;
-                        }
-
-                        // Consumir item en inventario del jugador
-                        var inv = player.getInventory();
-                        if (item.getAmount() > 1) item.setAmount(item.getAmount() - 1);
-                        else inv.setItemInMainHand(null);
-
-                        // Después de un canje exitoso, sincronizar el balance local hacia Lands
-                        cm.requestRefresh(landId);
-                        cm.syncToLands(landId, innerLc.getBankBalance());
-                        player.sendMessage("Canjeado billete por " + value2);
-                    });
-                    return true;
+                    return redeem(player, cm, mode, force);
                 }
-                case "forceredeem": {
-                    // Solo operadores pueden forzar el canje
-                    if (!player.isOp() && !player.hasPermission("helieco.forceredeem")) {
-                        player.sendMessage("No tienes permiso para forzar el canje (se requiere OP o permiso helieco.forceredeem).");
+                case "top": {
+                    if (!player.isOp() && !player.hasPermission("helieco.admin")) {
+                        player.sendMessage("No tienes permiso (se requiere OP o permiso helieco.admin).");
                         return true;
                     }
-
-                    // Redeem the bill in player's main hand (force, ignoring expiry)
-                    var itemF = player.getInventory().getItemInMainHand();
-                    var bdF = BillData.fromItem(itemF, plugin);
-                    if (bdF == null) {
-                        player.sendMessage("No hay un billete válido en la mano para forzar canje.");
-                        return true;
+                    int limit = 10;
+                    if (args.length >= 2) {
+                        try { limit = Math.max(1, Math.min(100, Integer.parseInt(args[1]))); } catch (NumberFormatException ignored) {}
                     }
-                    String landIdF = bdF.getLandId();
-
-                    // sincronizar antes de canjear
-                    cm.syncFromLands(landIdF);
-
-                    cm.runLocked(landIdF, () -> {
-                        var innerLc = cm.getOrCreate(landIdF);
-                        int totalBefore2 = innerLc.getIssuedCount();
-                        if (totalBefore2 <= 0) {
-                            player.sendMessage("Error: no hay billetes registrados para esta Land.");
-                            return;
-                        }
-                        java.math.BigDecimal value2 = java.math.BigDecimal.ZERO;
-                        try {
-                            value2 = innerLc.getBankBalance().divide(java.math.BigDecimal.valueOf(totalBefore2), 2, java.math.RoundingMode.DOWN);
-                        } catch (ArithmeticException ex) {
-                            value2 = java.math.BigDecimal.ZERO;
-                        }
-
-                        // Restar del banco (reserva efectiva al canjear)
-                        innerLc.setBankBalance(innerLc.getBankBalance().subtract(value2));
-                        innerLc.removeOneIssued();
-                        cm.save(innerLc);
-
-                        // Intentar pagar al jugador y comprobar resultado
-                        try {
-                            EconomyResponse resp = plugin.getEconomy().depositPlayer(player, value2.doubleValue());
-                            if (resp == null || !resp.transactionSuccess()) {
-                                // Revertir cambios en caso de fallo al pagar
-                                innerLc.setBankBalance(innerLc.getBankBalance().add(value2));
-                                innerLc.addIssued(1);
-                                cm.save(innerLc);
-                                player.sendMessage("Error al pagar. Operación revertida.");
-                                return;
-                            }
-                        } catch (Throwable ex) {
-                            innerLc.setBankBalance(innerLc.getBankBalance().add(value2));
-                            innerLc.addIssued(1);
-                            cm.save(innerLc);
-                            player.sendMessage("Error al pagar (exception). Operación revertida.");
-                            plugin.getLogger().severe("Error pagando billete (forceredeem): " + ex.getMessage());
-                            return;
+                    final int lim = limit;
+                    cm.queryAsync(repo -> repo.topByBank(lim), rows -> {
+                        player.sendMessage("--- Top " + lim + " lands por banco ---");
+                        int pos = 1;
+                        for (var row : rows) {
+                            String shown = row.name() == null || row.name().isEmpty() ? row.landId() : row.name();
+                            player.sendMessage(pos++ + ". " + shown + ": " + row.bankBalance().toPlainString() + " (billetes: " + row.issuedCount() + ")");
                         }
-
-                        // Consumir item
-                        var inv = player.getInventory();
-                        if (itemF.getAmount() > 1) itemF.setAmount(itemF.getAmount() - 1);
-                        else inv.setItemInMainHand(null);
-
-                        cm.requestRefresh(landIdF);
-                        cm.syncToLands(landIdF, innerLc.getBankBalance());
-                        player.sendMessage("(FORZADO) Canjeado billete por " + value2);
                     });
                     return true;
                 }
@@ -379,21 +285,120 @@ public class CurrencyCommands implements CommandExecutor {
         }
     }
 
+    // Métricas internas para administradores (colas, sincronización y cooldowns).
+    private boolean showStats(Player player, CurrencyManager cm) {
+        player.sendMessage("--- Helieco: estadísticas ---");
+        if (!cm.isLazyRefresh()) {
+            var rs = cm.getRefreshScheduler();
+            player.sendMessage("Cola de refresco de billetes: " + rs.getQueueDepth() + " lands pendientes, retraso " + rs.getLagMillis() + " ms");
+        }
+        var ss = cm.getSyncScheduler();
+        player.sendMessage("Sync periódico: " + ss.getChanged() + " con cambios, " + ss.getSkipped() + " sin cambios, " + ss.getFailed() + " fallidos");
+        var bq = cm.getBankChangeQueue();
+        if (bq.isActive()) player.sendMessage("Sync push: " + bq.getReceived() + " avisos, " + bq.getApplied() + " aplicados");
+        if (plugin.getWorkPointManager() != null) {
+            var wc = plugin.getWorkPointManager().getCooldowns();
+            player.sendMessage("Cooldowns de trabajo: " + wc.getTrackedPlayers() + " jugadores, " + (wc.footprintBytes() / 1024) + " KiB");
+        }
+        if (plugin.getBiomeDropManager() != null) {
+            var bc = plugin.getBiomeDropManager().getCooldowns();
+            player.sendMessage("Cooldowns de biomas: " + bc.getTrackedPlayers() + " jugadores, " + (bc.footprintBytes() / 1024) + " KiB");
+        }
+        return true;
+    }
+
+    // el almacenamiento mapped guarda nombres de tamaño fijo: rechazar antes que recortar
+    private boolean nameFits(Player player, CurrencyManager cm, String name) {
+        int max = cm.getMaxNameBytes();
+        if (name.getBytes(java.nio.charset.StandardCharsets.UTF_8).length <= max) return true;
+        player.sendMessage("Nombre demasiado largo (máximo " + max + " bytes).");
+        return false;
+    }
+
     private boolean showHelp(Player player, int page) {
         // Simple paged help (only one page for now)
         player.sendMessage("--- /landcurrency ayuda (página " + page + ") ---");
         player.sendMessage("/landcurrency create <nombre>  - Crear o actualizar la moneda de la Land");
         player.sendMessage("/landcurrency emit <cantidad> - Emitir billetes (se sincroniza antes con Lands)");
         player.sendMessage("/landcurrency info             - Mostrar info y sincronizar desde Lands");
-        player.sendMessage("/landcurrency redeem           - Canjear billete (solo si está vencido)");
+        player.sendMessage("/landcurrency redeem [stack|all] - Canjear billete, la pila o todos los de esa Land (solo vencidos)");
         player.sendMessage("/landcurrency rename <nombre>  - Renombrar la moneda de la Land");
-        player.sendMessage("/landcurrency forceredeem      - Forzar canje (OP/permiso requerido)");
+        player.sendMessage("/landcurrency forceredeem [stack|all] - Forzar canje (OP/permiso requerido)");
         player.sendMessage("/landcurrency sync             - Forzar sincronización desde Lands para tu Land");
+        player.sendMessage("/landcurrency top [n]          - Lands con más banco (admin)");
+        player.sendMessage("/landcurrency stats            - Colas, sincronización y cooldowns (admin)");
         player.sendMessage("/landcurrency reload           - Recargar configuración del plugin (permiso helieco.reload)");
         player.sendMessage("/landcurrency help [página]    - Mostrar esta ayuda");
         return true;
     }
 
+    // Canjea billetes de una misma Land: uno de la mano (one), la pila de la mano (stack) o
+    // todos los billetes de esa Land en el inventario (all). Los billetes se retiran del
+    // inventario y quedan en custodia hasta que RedemptionQueue liquida el lote de la Land
+    // en el tick siguiente; si el pago falla se devuelven.
+    private boolean redeem(Player player, CurrencyManager cm, String mode, boolean force) {
+        var inv = player.getInventory();
+        var item = inv.getItemInMainHand();
+        var bd = BillData.fromItem(item, plugin);
+        if (bd == null) {
+            player.sendMessage(force ? "No hay un billete válido en la mano para forzar canje." : "No hay un billete válido en la mano.");
+            return true;
+        }
+        String landId = bd.getLandId();
+
+        if (!force) {
+            // Check expiry: only allow redeem if the bill has an expiration date AND it is already expired
+            if (bd.getExpireDate() == null || bd.getExpireDate().isEmpty()) {
+                player.sendMessage("Este billete no tiene fecha de vencimiento y no puede canjearse hasta que expire.");
+                return true;
+            }
+            // If expiration is today or in the future, it's NOT yet expired -> disallow
+            if (!isExpired(bd)) {
+                player.sendMessage("El billete aún no ha vencido. Solo puede canjearse después de la fecha de vencimiento: " + bd.getExpireDate());
+                return true;
+            }
+        }
+
+        // slot -> billetes a retirar de ese slot
+        java.util.Map<Integer, Integer> take = new java.util.LinkedHashMap<>();
+        int held = inv.getHeldItemSlot();
+        take.put(held, mode.equals("one") ? 1 : item.getAmount());
+        if (mode.equals("all")) {
+            ItemStack[] contents = inv.getStorageContents();
+            for (int i = 0; i < contents.length; i++) {
+                if (i == held || contents[i] == null) continue;
+                var other = BillData.fromItem(contents[i], plugin);
+                if (other == null || !landId.equals(other.getLandId())) continue;
+                if (!force && !isExpired(other)) continue;
+                take.put(i, contents[i].getAmount());
+            }
+        }
+
+        List<ItemStack> escrow = new ArrayList<>();
+        int count = 0;
+        for (var e : take.entrySet()) {
+            ItemStack it = inv.getItem(e.getKey());
+            int n = e.getValue();
+            ItemStack part = it.clone();
+            part.setAmount(n);
+            escrow.add(part);
+            count += n;
+            if (it.getAmount() > n) it.setAmount(it.getAmount() - n);
+            else inv.setItem(e.getKey(), null);
+        }
+        cm.getRedemptions().enqueue(new RedemptionQueue.Redemption(player, landId, escrow, count, force));
+        return true;
+    }
+
+    private static boolean isExpired(BillData bd) {
+        if (bd.getExpireDate() == null || bd.getExpireDate().isEmpty()) return false;
+        try {
+            return LocalDate.parse(bd.getExpireDate()).isBefore(LocalDate.now());
+        } catch (java.time.format.DateTimeParseException e) {
+            return false;
+        }
+    }
+
     private boolean handleReload(CommandSender sender) {
         if (!sender.hasPermission("helieco.reload")) {
             sender.sendMessage("No tienes permiso para recargar el plugin.");
@@ -403,27 +408,76 @@ public class CurrencyCommands implements CommandExecutor {
         plugin.reloadConfig();
         if (plugin.getBiomeDropManager() != null) plugin.getBiomeDropManager().loadConfig(plugin);
         if (plugin.getWorkPointManager() != null) plugin.getWorkPointManager().loadConfig();
-        if (plugin.getCurrencyManager() != null) plugin.getCurrencyManager().loadAll();
+        if (plugin.getLandLookupCache() != null) plugin.getLandLookupCache().loadConfig();
+        if (plugin.getLandsGateway() != null) plugin.getLandsGateway().clearNegativeCache();
+        if (plugin.getBillCodec() != null) plugin.getBillCodec().loadConfig();
+        if (plugin.getCurrencyManager() != null) {
+            plugin.getCurrencyManager().loadAll();
+            plugin.getCurrencyManager().startBillRefresh();
+        }
         sender.sendMessage("Configuración recargada.");
         return true;
     }
 
-    // Placeholder: intenta determinar la Land del jugador.
+    // Intenta determinar la Land del jugador.
     // Devuelve el id como String (puede ser UUID, ULID, etc.).
-    // Debe reemplazarse por la llamada real a LandsAPI para comprobar ownership.
+    // Chunk -> land y (jugador, land) -> id se cachean en LandLookupCache; la reflection
+    // solo se ejecuta cuando falta alguna de las dos entradas. La caché solo guarda lo que
+    // dice Lands (ownership); el permiso de admin/op se comprueba en cada llamada.
     private String tryGetLandOfPlayer(Player player) {
+        LandsIntegration lands = plugin.getLands();
+        if (lands == null) return null;
+        var cache = plugin.getLandLookupCache();
+        org.bukkit.World world = player.getWorld();
+        int cx = player.getLocation().getBlockX() >> 4;
+        int cz = player.getLocation().getBlockZ() >> 4;
+
+        boolean admin = player.isOp() || player.hasPermission("helieco.admin");
+        String landKey = cache.landAt(world, cx, cz);
+        if (landKey != null && landKey.isEmpty()) return null;
+        if (landKey != null) {
+            String owned = cache.ownership(player.getUniqueId(), landKey);
+            if (owned != null && !owned.isEmpty()) return owned;
+            if (owned != null && !admin) return null;
+            String fallback = owned != null ? cache.fallbackId(landKey) : null;
+            if (fallback != null) return fallback.isEmpty() ? null : fallback;
+        }
+
+        Object land = findLandAt(player, lands, world, cx, cz);
+        if (land == null) {
+            cache.putLandAt(world, cx, cz, "");
+            return null;
+        }
+        landKey = plugin.getLandsGateway().landId(land);
+        if (landKey == null) landKey = String.valueOf(land);
+        cache.putLandAt(world, cx, cz, landKey);
+
+        String owned;
         try {
-            LandsIntegration lands = plugin.getLands();
-            if (lands == null) return null;
+            owned = resolveOwnedLandId(player, land);
+        } catch (Exception t) {
+            // los errores no se cachean
+            plugin.getLogger().warning("Error comprobando Land ownership: " + t.getMessage());
+            return null;
+        }
+        cache.putOwnership(player.getUniqueId(), landKey, owned);
+        if (owned != null || !admin) return owned;
+
+        String fallback = resolveFallbackLandId(land);
+        cache.putFallbackId(landKey, fallback);
+        if (fallback != null) plugin.getDebugLogger().fine("Player " + player.getName() + " has admin/op permission; granting Land id " + fallback + " as fallback.");
+        return fallback;
+    }
 
+    private Object findLandAt(Player player, LandsIntegration lands, org.bukkit.World world, int cx, int cz) {
+        try {
             Object land = null;
 
             // Intentar métodos comunes en LandsIntegration
             // 1) getLandByChunk(World,int,int)
             try {
                 Method m = lands.getClass().getMethod("getLandByChunk", org.bukkit.World.class, int.class, int.class);
-                org.bukkit.Chunk c = player.getLocation().getChunk();
-                land = m.invoke(lands, player.getWorld(), c.getX(), c.getZ());
+                land = m.invoke(lands, world, cx, cz);
             } catch (NoSuchMethodException ignored) {
             }
 
@@ -445,236 +499,254 @@ public class CurrencyCommands implements CommandExecutor {
             }
 
             if (land == null) {
-                plugin.getLogger().warning("No se pudo obtener Land desde LandsIntegration. Métodos disponibles en LandsIntegration:");
-                for (Method mm : lands.getClass().getMethods()) {
-                    plugin.getLogger().warning(" - " + mm.toString());
+                if (plugin.getLandLookupCache().shouldDump("integration")) {
+                    plugin.getLogger().warning("No se pudo obtener Land desde LandsIntegration. Métodos disponibles en LandsIntegration:");
+                    for (Method mm : lands.getClass().getMethods()) {
+                        plugin.getLogger().warning(" - " + mm.toString());
+                    }
+                } else {
+                    plugin.getDebugLogger().fine("No se pudo obtener Land en " + world.getName() + " " + cx + "," + cz);
                 }
-                return null;
             }
+            return land;
+        } catch (Throwable t) {
+            plugin.getLogger().warning("Error obteniendo Land desde LandsIntegration: " + t.getMessage());
+            return null;
+        }
+    }
 
-            Class<?> landCls = land.getClass();
+    // Comprueba ownership y devuelve el id de la land, o null si el jugador no es owner.
+    // El fallback de admin va aparte (resolveFallbackLandId).
+    private String resolveOwnedLandId(Player player, Object land) throws Exception {
+        Class<?> landCls = land.getClass();
 
-            plugin.getDebugLogger().fine("Land object class=" + landCls.getName());
-            plugin.getDebugLogger().fine("Checking ownership for player UUID=" + player.getUniqueId());
+        plugin.getDebugLogger().fine("Land object class=" + landCls.getName());
+        plugin.getDebugLogger().fine("Checking ownership for player UUID=" + player.getUniqueId());
 
-                // 1) Intentar isOwner(UUID)
-            try {
-                Method isOwner = landCls.getMethod("isOwner", java.util.UUID.class);
-                Object res = isOwner.invoke(land, player.getUniqueId());
-                plugin.getDebugLogger().fine("isOwner(UUID) invocation: " + String.valueOf(res));
-                if (res instanceof Boolean && (Boolean) res) {
-                        // Prefer methods that return a textual ULID/id
-                        String[] preferIdMethods = new String[]{"getULID", "getUlid", "getULIDString", "getUlidString", "getUniqueId", "getId"};
-                        for (String mid : preferIdMethods) {
-                            try {
-                                Method getId = landCls.getMethod(mid);
-                                Object id = getId.invoke(land);
-                                if (id != null) {
-                                    String sid = id.toString();
-                                    if (sid == null || sid.trim().isEmpty()) {
-                                        plugin.getDebugLogger().fine("Method " + mid + " returned empty id; ignoring.");
-                                        continue;
-                                    }
-                                    plugin.getDebugLogger().fine("Using id from method " + mid + " -> " + sid);
-                                    // If method returned numeric -1, keep searching
-                                    if (sid.equals("-1") || sid.equals("0")) {
-                                        continue;
-                                    }
-                                    return sid;
+            // 1) Intentar isOwner(UUID)
+        try {
+            Method isOwner = landCls.getMethod("isOwner", java.util.UUID.class);
+            Object res = isOwner.invoke(land, player.getUniqueId());
+            plugin.getDebugLogger().fine("isOwner(UUID) invocation: " + String.valueOf(res));
+            if (res instanceof Boolean && (Boolean) res) {
+                    // Prefer methods that return a textual ULID/id
+                    String[] preferIdMethods = new String[]{"getULID", "getUlid", "getULIDString", "getUlidString", "getUniqueId", "getId"};
+                    for (String mid : preferIdMethods) {
+                        try {
+                            Method getId = landCls.getMethod(mid);
+                            Object id = getId.invoke(land);
+                            if (id != null) {
+                                String sid = id.toString();
+                                if (sid == null || sid.trim().isEmpty()) {
+                                    plugin.getDebugLogger().fine("Method " + mid + " returned empty id; ignoring.");
+                                    continue;
+                                }
+                                plugin.getDebugLogger().fine("Using id from method " + mid + " -> " + sid);
+                                // If method returned numeric -1, keep searching
+                                if (sid.equals("-1") || sid.equals("0")) {
+                                    continue;
                                 }
-                            } catch (NoSuchMethodException ignored) {
-                                plugin.getDebugLogger().fine("Method not present on Land: " + mid);
+                                return sid;
                             }
+                        } catch (NoSuchMethodException ignored) {
+                            plugin.getDebugLogger().fine("Method not present on Land: " + mid);
                         }
+                    }
 
-                        // Fallback: intentar extraer ULID del toString() del objeto Land
-                        try {
-                            String repr = land.toString();
-                            java.util.regex.Matcher m = java.util.regex.Pattern.compile("ulid=([^,}]+)").matcher(repr);
-                                if (m.find()) {
-                                String ulid = m.group(1);
-                                if (ulid != null && !ulid.trim().isEmpty()) {
-                                    plugin.getDebugLogger().fine("Extracted ULID from toString(): " + ulid);
-                                    return ulid;
-                                } else {
-                                    plugin.getDebugLogger().fine("Extracted ULID from toString() was empty; ignoring.");
-                                }
+                    // Fallback: intentar extraer ULID del toString() del objeto Land
+                    try {
+                        String repr = land.toString();
+                        java.util.regex.Matcher m = java.util.regex.Pattern.compile("ulid=([^,}]+)").matcher(repr);
+                            if (m.find()) {
+                            String ulid = m.group(1);
+                            if (ulid != null && !ulid.trim().isEmpty()) {
+                                plugin.getDebugLogger().fine("Extracted ULID from toString(): " + ulid);
+                                return ulid;
+                            } else {
+                                plugin.getDebugLogger().fine("Extracted ULID from toString() was empty; ignoring.");
                             }
-                        } catch (Throwable ignored) {}
+                        }
+                    } catch (Throwable ignored) {}
 
-                        return null;
-                }
-            } catch (NoSuchMethodException ignored) {
-                // no public isOwner(UUID)
+                    return null;
             }
+        } catch (NoSuchMethodException ignored) {
+            // no public isOwner(UUID)
+        }
 
-            // Helper: intenta obtener método público o declarado y hacerlo accesible
-            java.util.function.Function<String, Method> findMethod = (String name) -> {
+        // Helper: intenta obtener método público o declarado y hacerlo accesible
+        java.util.function.Function<String, Method> findMethod = (String name) -> {
+            try {
+                return landCls.getMethod(name);
+            } catch (NoSuchMethodException e) {
                 try {
-                    return landCls.getMethod(name);
-                } catch (NoSuchMethodException e) {
-                    try {
-                        Method m = landCls.getDeclaredMethod(name);
-                        m.setAccessible(true);
-                        return m;
-                    } catch (NoSuchMethodException | SecurityException ex) {
-                        plugin.getLogger().info("Method not found on Land (helper): " + name);
-                        return null;
-                    }
+                    Method m = landCls.getDeclaredMethod(name);
+                    m.setAccessible(true);
+                    return m;
+                } catch (NoSuchMethodException | SecurityException ex) {
+                    plugin.getLogger().info("Method not found on Land (helper): " + name);
+                    return null;
                 }
-            };
+            }
+        };
 
-            // 2) Intentar getOwnerUID() (algunas versiones exponen directamente el UUID)
-            try {
-                Method getOwnerUID = findMethod.apply("getOwnerUID");
-                if (getOwnerUID != null) {
-                    Object ou = getOwnerUID.invoke(land);
-                    plugin.getDebugLogger().fine("getOwnerUID() -> " + (ou == null ? "null" : (ou.getClass().getName() + " -> " + ou.toString())));
-                    java.util.UUID ownerUuid = null;
-                    if (ou instanceof java.util.UUID) ownerUuid = (java.util.UUID) ou;
-                    else if (ou instanceof String) {
-                        try { ownerUuid = java.util.UUID.fromString((String) ou); } catch (IllegalArgumentException ignored) {}
-                    }
-                    if (ownerUuid != null && ownerUuid.equals(player.getUniqueId())) {
-                        Method getId2 = findMethod.apply("getId");
-                        if (getId2 != null) {
-                            Object id2 = getId2.invoke(land);
-                            if (id2 != null) {
-                                String sid = id2.toString();
-                                if (sid == null || sid.trim().isEmpty()) {
-                                    plugin.getDebugLogger().fine("getId() returned empty id; attempting ULID fallback.");
-                                }
-                                if (sid.equals("-1") || sid.equals("0")) {
-                                    // try extracting ULID from toString() as fallback
-                                    try {
-                                        String repr = land.toString();
-                                        java.util.regex.Matcher m = java.util.regex.Pattern.compile("ulid=([^,}]+)").matcher(repr);
-                                        if (m.find()) {
-                                            String ulid = m.group(1);
-                                            if (ulid != null && !ulid.trim().isEmpty()) {
-                                                plugin.getDebugLogger().fine("Extracted ULID from toString() as fallback: " + ulid);
-                                                return ulid;
-                                            }
+        // 2) Intentar getOwnerUID() (algunas versiones exponen directamente el UUID)
+        try {
+            Method getOwnerUID = findMethod.apply("getOwnerUID");
+            if (getOwnerUID != null) {
+                Object ou = getOwnerUID.invoke(land);
+                plugin.getDebugLogger().fine("getOwnerUID() -> " + (ou == null ? "null" : (ou.getClass().getName() + " -> " + ou.toString())));
+                java.util.UUID ownerUuid = null;
+                if (ou instanceof java.util.UUID) ownerUuid = (java.util.UUID) ou;
+                else if (ou instanceof String) {
+                    try { ownerUuid = java.util.UUID.fromString((String) ou); } catch (IllegalArgumentException ignored) {}
+                }
+                if (ownerUuid != null && ownerUuid.equals(player.getUniqueId())) {
+                    Method getId2 = findMethod.apply("getId");
+                    if (getId2 != null) {
+                        Object id2 = getId2.invoke(land);
+                        if (id2 != null) {
+                            String sid = id2.toString();
+                            if (sid == null || sid.trim().isEmpty()) {
+                                plugin.getDebugLogger().fine("getId() returned empty id; attempting ULID fallback.");
+                            }
+                            if (sid.equals("-1") || sid.equals("0")) {
+                                // try extracting ULID from toString() as fallback
+                                try {
+                                    String repr = land.toString();
+                                    java.util.regex.Matcher m = java.util.regex.Pattern.compile("ulid=([^,}]+)").matcher(repr);
+                                    if (m.find()) {
+                                        String ulid = m.group(1);
+                                        if (ulid != null && !ulid.trim().isEmpty()) {
+                                            plugin.getDebugLogger().fine("Extracted ULID from toString() as fallback: " + ulid);
+                                            return ulid;
                                         }
-                                    } catch (Throwable ignored) {}
-                                    // otherwise return null to indicate not found
-                                    return null;
-                                }
-                                return sid;
+                                    }
+                                } catch (Throwable ignored) {}
+                                // otherwise return null to indicate not found
+                                return null;
                             }
+                            return sid;
                         }
-                        return null;
                     }
+                    return null;
                 }
-            } catch (Throwable ignored) {
             }
+        } catch (Throwable ignored) {
+        }
 
-            // 3) Intentar getOwner() y extraer UUID de distintas formas
-            try {
-                Method getOwner = findMethod.apply("getOwner");
-                if (getOwner != null) {
-                    Object owner = getOwner.invoke(land);
-                    plugin.getDebugLogger().fine("getOwner() -> " + (owner == null ? "null" : (owner.getClass().getName() + " -> " + owner.toString())));
-                    if (owner != null) {
-                        java.util.UUID ownerUuid = null;
-                        if (owner instanceof java.util.UUID) ownerUuid = (java.util.UUID) owner;
-                        else if (owner instanceof String) {
-                            try { ownerUuid = java.util.UUID.fromString((String) owner); } catch (IllegalArgumentException ignored) {}
-                        } else {
-                            // intentar owner.getUuid() o owner.getUniqueId()
+        // 3) Intentar getOwner() y extraer UUID de distintas formas
+        try {
+            Method getOwner = findMethod.apply("getOwner");
+            if (getOwner != null) {
+                Object owner = getOwner.invoke(land);
+                plugin.getDebugLogger().fine("getOwner() -> " + (owner == null ? "null" : (owner.getClass().getName() + " -> " + owner.toString())));
+                if (owner != null) {
+                    java.util.UUID ownerUuid = null;
+                    if (owner instanceof java.util.UUID) ownerUuid = (java.util.UUID) owner;
+                    else if (owner instanceof String) {
+                        try { ownerUuid = java.util.UUID.fromString((String) owner); } catch (IllegalArgumentException ignored) {}
+                    } else {
+                        // intentar owner.getUuid() o owner.getUniqueId()
+                        try {
+                            Method gu = owner.getClass().getMethod("getUuid");
+                            Object ou = gu.invoke(owner);
+                            plugin.getDebugLogger().fine("owner.getUuid() -> " + (ou == null ? "null" : (ou.getClass().getName() + " -> " + ou.toString())));
+                            if (ou instanceof java.util.UUID) ownerUuid = (java.util.UUID) ou;
+                            else if (ou instanceof String) ownerUuid = java.util.UUID.fromString((String) ou);
+                        } catch (NoSuchMethodException ignored2) {
                             try {
-                                Method gu = owner.getClass().getMethod("getUuid");
-                                Object ou = gu.invoke(owner);
-                                plugin.getDebugLogger().fine("owner.getUuid() -> " + (ou == null ? "null" : (ou.getClass().getName() + " -> " + ou.toString())));
-                                if (ou instanceof java.util.UUID) ownerUuid = (java.util.UUID) ou;
-                                else if (ou instanceof String) ownerUuid = java.util.UUID.fromString((String) ou);
-                            } catch (NoSuchMethodException ignored2) {
-                                try {
-                                    Method gu2 = owner.getClass().getMethod("getUniqueId");
-                                    Object ou2 = gu2.invoke(owner);
-                                    plugin.getDebugLogger().fine("owner.getUniqueId() -> " + (ou2 == null ? "null" : (ou2.getClass().getName() + " -> " + ou2.toString())));
-                                    if (ou2 instanceof java.util.UUID) ownerUuid = (java.util.UUID) ou2;
-                                    else if (ou2 instanceof String) ownerUuid = java.util.UUID.fromString((String) ou2);
-                                } catch (NoSuchMethodException ignored3) {
-                                }
+                                Method gu2 = owner.getClass().getMethod("getUniqueId");
+                                Object ou2 = gu2.invoke(owner);
+                                plugin.getDebugLogger().fine("owner.getUniqueId() -> " + (ou2 == null ? "null" : (ou2.getClass().getName() + " -> " + ou2.toString())));
+                                if (ou2 instanceof java.util.UUID) ownerUuid = (java.util.UUID) ou2;
+                                else if (ou2 instanceof String) ownerUuid = java.util.UUID.fromString((String) ou2);
+                            } catch (NoSuchMethodException ignored3) {
                             }
                         }
+                    }
 
-                        if (ownerUuid != null && ownerUuid.equals(player.getUniqueId())) {
-                            Method getId2 = findMethod.apply("getId");
-                            if (getId2 != null) {
-                                    Object id2 = getId2.invoke(land);
-                                    if (id2 != null) {
-                                        String sid = id2.toString();
-                                        if (sid == null || sid.trim().isEmpty()) {
-                                            plugin.getDebugLogger().fine("getId() returned empty id; attempting ULID fallback.");
-                                        }
-                                        if (sid.equals("-1") || sid.equals("0")) {
-                                            try {
-                                                String repr = land.toString();
-                                                java.util.regex.Matcher m = java.util.regex.Pattern.compile("ulid=([^,}]+)").matcher(repr);
-                                                if (m.find()) {
-                                                    String ulid = m.group(1);
-                                                    if (ulid != null && !ulid.trim().isEmpty()) {
-                                                        plugin.getDebugLogger().fine("Extracted ULID from toString() as fallback: " + ulid);
-                                                        return ulid;
-                                                    }
+                    if (ownerUuid != null && ownerUuid.equals(player.getUniqueId())) {
+                        Method getId2 = findMethod.apply("getId");
+                        if (getId2 != null) {
+                                Object id2 = getId2.invoke(land);
+                                if (id2 != null) {
+                                    String sid = id2.toString();
+                                    if (sid == null || sid.trim().isEmpty()) {
+                                        plugin.getDebugLogger().fine("getId() returned empty id; attempting ULID fallback.");
+                                    }
+                                    if (sid.equals("-1") || sid.equals("0")) {
+                                        try {
+                                            String repr = land.toString();
+                                            java.util.regex.Matcher m = java.util.regex.Pattern.compile("ulid=([^,}]+)").matcher(repr);
+                                            if (m.find()) {
+                                                String ulid = m.group(1);
+                                                if (ulid != null && !ulid.trim().isEmpty()) {
+                                                    plugin.getDebugLogger().fine("Extracted ULID from toString() as fallback: " + ulid);
+                                                    return ulid;
                                                 }
-                                            } catch (Throwable ignored) {}
-                                            return null;
-                                        }
-                                        return sid;
+                                            }
+                                        } catch (Throwable ignored) {}
+                                        return null;
                                     }
-                            }
-                            return null;
-                        }
-                    }
-                }
-            } catch (Throwable ignored) {
-            }
-
-            // Fallback de administrador/operador: permitir si tiene permiso
-            try {
-                Method getIdFallback = findMethod.apply("getId");
-                if (getIdFallback != null) {
-                    Object idObj = getIdFallback.invoke(land);
-                    if (idObj != null) {
-                        String possibleId = idObj.toString();
-                        // Reject sentinel values like -1 or 0 even for admin/op; try extracting ULID from toString() instead
-                        if (possibleId == null || possibleId.trim().isEmpty() || possibleId.equals("-1") || possibleId.equals("0")) {
-                            plugin.getDebugLogger().fine("Fallback getId() returned sentinel/empty value '" + possibleId + "' for land; attempting to extract ULID from toString() instead.");
-                            try {
-                                String repr = land.toString();
-                                java.util.regex.Matcher m = java.util.regex.Pattern.compile("ulid=([^,}]+)").matcher(repr);
-                                if (m.find()) {
-                                    String ulid = m.group(1);
-                                    plugin.getDebugLogger().fine("Extracted ULID from toString() as fallback: " + ulid);
-                                    return ulid;
+                                    return sid;
                                 }
-                            } catch (Throwable ignored2) {}
-                            // if we couldn't extract, do not return the sentinel id
-                            plugin.getLogger().warning("Admin fallback getId() returned invalid id and no ULID could be extracted; refusing to use '" + possibleId + "'.");
-                            return null;
-                        }
-
-                        if (player.hasPermission("helieco.admin") || player.isOp()) {
-                            plugin.getDebugLogger().fine("Player " + player.getName() + " has admin/op permission; granting Land id " + possibleId + " as fallback.");
-                            return possibleId;
                         }
+                        return null;
                     }
                 }
-            } catch (Throwable ignored) {
             }
+        } catch (Throwable ignored) {
+        }
 
+        if (plugin.getLandLookupCache().shouldDump("ownership:" + landCls.getName())) {
             plugin.getLogger().warning("No se pudo determinar ownership for Land (reduced logging). Enable DEBUG for details.");
             StringBuilder sb = new StringBuilder();
             for (Method mm : landCls.getMethods()) sb.append(" - ").append(mm.toString()).append('\n');
             plugin.getDebugLogger().fine(sb.toString());
+        }
 
-            return null;
-        } catch (Throwable t) {
-            plugin.getLogger().warning("Error comprobando Land ownership: " + t.getMessage());
-            return null;
+        return null;
+    }
+
+    // Id de la land para el fallback de administrador/operador (no depende del jugador;
+    // el permiso lo comprueba quien llama). null si la land no expone un id válido.
+    private String resolveFallbackLandId(Object land) {
+        try {
+            Method getIdFallback;
+            try {
+                getIdFallback = land.getClass().getMethod("getId");
+            } catch (NoSuchMethodException e) {
+                getIdFallback = land.getClass().getDeclaredMethod("getId");
+                getIdFallback.setAccessible(true);
+            }
+            if (getIdFallback != null) {
+                Object idObj = getIdFallback.invoke(land);
+                if (idObj != null) {
+                    String possibleId = idObj.toString();
+                    // Reject sentinel values like -1 or 0 even for admin/op; try extracting ULID from toString() instead
+                    if (possibleId == null || possibleId.trim().isEmpty() || possibleId.equals("-1") || possibleId.equals("0")) {
+                        plugin.getDebugLogger().fine("Fallback getId() returned sentinel/empty value '" + possibleId + "' for land; attempting to extract ULID from toString() instead.");
+                        try {
+                            String repr = land.toString();
+                            java.util.regex.Matcher m = java.util.regex.Pattern.compile("ulid=([^,}]+)").matcher(repr);
+                            if (m.find()) {
+                                String ulid = m.group(1);
+                                plugin.getDebugLogger().fine("Extracted ULID from toString() as fallback: " + ulid);
+                                return ulid;
+                            }
+                        } catch (Throwable ignored2) {}
+                        // if we couldn't extract, do not return the sentinel id
+                        plugin.getLogger().warning("Admin fallback getId() returned invalid id and no ULID could be extracted; refusing to use '" + possibleId + "'.");
+                        return null;
+                    }
+
+                    return possibleId;
+                }
+            }
+        } catch (Throwable ignored) {
         }
+
+        return null;
     }
 }
@@ -0,0 +1,324 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Journal binario de solo-añadir (write-ahead) con los cambios de las monedas.
+ *
+ * Cada registro guarda el tipo de operación y el estado absoluto resultante de la land,
+ * así que reproducirlo es idempotente y un canje (banco + circulación) es un único
+ * registro: no puede quedar a medias.
+ *
+ * Formato de registro (big-endian):
+ * <pre>
+ *   int    longitud del cuerpo
+ *   cuerpo: byte tipo, long secuencia, utf landId, utf nombre, utf banco, int emitidos, long época
+ *   int    CRC32 del cuerpo
+ * </pre>
+ *
+ * Un hilo dedicado agrupa los registros encolados y los escribe con un único write +
+ * fsync por lote (group commit). Cuando el archivo supera `currency.journal.compact_bytes`
+ * se rota, se vuelcan los YAML pendientes (CurrencyWriteBehind) y se borra el journal
+ * rotado. Al arrancar se reproduce el journal sobre los YAML, parando en el primer
+ * registro corrupto o incompleto.
+ */
+public class CurrencyJournal {
+
+    // el ordinal se guarda en disco: añadir tipos solo al final
+    public enum Op {
+        EMIT, REDEEM, REVERT, SYNC_IN, SYNC_OUT, RENAME,
+        // estado guardado sin una operación concreta (p. ej. un refresco)
+        STATE
+    }
+
+    public record Entry(Op op, long seq, LandCurrency.Snapshot state) {
+    }
+
+    private static final Op[] OPS = Op.values();
+    private static final int MAX_RECORD = 1 << 20;
+
+    private final EconomyPlugin plugin;
+    private final CurrencyWriteBehind writeBehind;
+    private final File file;
+    private final File rotated;
+
+    private final LinkedBlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong seq = new AtomicLong();
+    private volatile boolean enabled = false;
+    private volatile boolean running = false;
+    private boolean started = false;
+    // close() no esperó al escritor: el propio hilo cierra el canal al terminar
+    private volatile boolean abandoned = false;
+    private long compactBytes = 4L * 1024 * 1024;
+    private FileChannel channel;
+    private Thread writer;
+
+    public CurrencyJournal(EconomyPlugin plugin, CurrencyWriteBehind writeBehind) {
+        this.plugin = plugin;
+        this.writeBehind = writeBehind;
+        File dir = new File(plugin.getDataFolder(), "data/currency");
+        if (!dir.exists()) dir.mkdirs();
+        this.file = new File(dir, "journal.bin");
+        this.rotated = new File(dir, "journal.bin.old");
+    }
+
+    public boolean isOpen() {
+        return running;
+    }
+
+    /**
+     * true tras el primer open(), aunque el journal esté deshabilitado: el replay se hace
+     * una sola vez por arranque.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Borra el journal (actual y rotado). Con el journal deshabilitado, una vez que lo
+     * reproducido ya está en el almacenamiento, para no volver a aplicarlo.
+     */
+    public void discard() {
+        if (running) return;
+        try {
+            Files.deleteIfExists(rotated.toPath());
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            plugin.getLogger().warning("No se pudo borrar el journal de monedas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reproduce el journal (rotado y actual) entregando cada registro válido en orden.
+     * Un registro corrupto o incompleto al final del archivo actual se trunca.
+     */
+    public int replay(Consumer<Entry> sink) {
+        int n = 0;
+        n += replayFile(rotated, sink, false);
+        n += replayFile(file, sink, true);
+        return n;
+    }
+
+    /**
+     * Abre el journal y arranca el hilo escritor. Llamar después de replay().
+     */
+    public void open() throws IOException {
+        started = true;
+        enabled = plugin.getConfig().getBoolean("currency.journal.enabled", true);
+        long cb = plugin.getConfig().getLong("currency.journal.compact_bytes", compactBytes);
+        if (cb > 0) compactBytes = cb;
+        if (!enabled) return;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        abandoned = false;
+        running = true;
+        writer = new Thread(this::runWriter, "Helieco-CurrencyJournal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Encola un registro. Seguro desde cualquier hilo; la escritura a disco la hace el
+     * hilo escritor junto con el resto del lote.
+     */
+    public void append(Op op, LandCurrency.Snapshot state) {
+        if (!running) return;
+        try {
+            queue.add(encode(op, seq.incrementAndGet(), state));
+        } catch (IOException e) {
+            plugin.getLogger().severe("No se pudo codificar registro de journal para " + state.landId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe lo encolado, detiene el hilo escritor y, si todos los YAML quedaron al día,
+     * vacía el journal. Llamar después del volcado final de CurrencyWriteBehind.
+     */
+    public void close(boolean snapshotsClean) {
+        if (!running) return;
+        running = false;
+        try {
+            writer.join(5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            // el escritor sigue con el canal (p. ej. un fsync lento): no tocar el archivo
+            // desde aquí; él termina lo encolado y cierra, y el journal se reproduce al arrancar
+            abandoned = true;
+            if (!writer.isAlive()) {
+                // terminó justo entre medias y ya no verá el aviso
+                try { channel.close(); } catch (IOException ignored) {}
+            }
+            plugin.getLogger().severe("El journal de monedas no terminó de escribir a tiempo; se conserva para reproducirlo al arrancar.");
+            return;
+        }
+        try {
+            // lo que el hilo no llegó a escribir
+            writeBatch(drain(new ArrayList<>()));
+            channel.close();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error cerrando el journal de monedas: " + e.getMessage());
+        }
+        if (snapshotsClean) {
+            try {
+                Files.deleteIfExists(rotated.toPath());
+                Files.write(file.toPath(), new byte[0]);
+            } catch (IOException e) {
+                plugin.getLogger().warning("No se pudo vaciar el journal de monedas: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<byte[]> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                byte[] first = queue.poll(100L, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                writeBatch(drain(batch));
+                batch.clear();
+                if (channel.size() >= compactBytes) compact();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable t) {
+                plugin.getLogger().severe("Error escribiendo el journal de monedas: " + t.getMessage());
+                batch.clear();
+            }
+        }
+        if (abandoned) {
+            try { channel.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private List<byte[]> drain(List<byte[]> batch) {
+        queue.drainTo(batch);
+        return batch;
+    }
+
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        ByteBuffer[] bufs = new ByteBuffer[batch.size()];
+        for (int i = 0; i < bufs.length; i++) bufs[i] = ByteBuffer.wrap(batch.get(i));
+        long remaining = 0;
+        for (ByteBuffer b : bufs) remaining += b.remaining();
+        while (remaining > 0) remaining -= channel.write(bufs);
+        channel.force(false);
+    }
+
+    /**
+     * Rota el journal y lo descarta una vez que los YAML contienen su estado.
+     * Solo desde el hilo escritor.
+     */
+    private void compact() throws IOException {
+        // un journal rotado anterior cuyo volcado falló: reintentar antes de rotar otra vez
+        if (rotated.exists()) {
+            if (!writeBehind.flushAll()) return;
+            Files.deleteIfExists(rotated.toPath());
+        }
+        channel.force(true);
+        channel.close();
+        Files.move(file.toPath(), rotated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // todo lo registrado en el journal rotado ya está marcado como pendiente en writeBehind
+        if (writeBehind.flushAll()) {
+            Files.deleteIfExists(rotated.toPath());
+            plugin.getDebugLogger().fine("Currency journal compacted at seq " + seq.get());
+        }
+    }
+
+    private static byte[] encode(Op op, long seq, LandCurrency.Snapshot s) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(op.ordinal());
+        out.writeLong(seq);
+        out.writeUTF(s.landId());
+        out.writeUTF(s.name() == null ? "" : s.name());
+        out.writeUTF(s.bankBalance() == null ? "0" : s.bankBalance().toPlainString());
+        out.writeInt(s.issuedCount());
+        out.writeLong(s.valuationEpoch());
+        byte[] b = body.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(b);
+        ByteBuffer rec = ByteBuffer.allocate(4 + b.length + 4);
+        rec.putInt(b.length);
+        rec.put(b);
+        rec.putInt((int) crc.getValue());
+        return rec.array();
+    }
+
+    private int replayFile(File f, Consumer<Entry> sink, boolean truncateTail) {
+        if (!f.exists()) return 0;
+        int n = 0;
+        long valid = 0;
+        try (InputStream raw = Files.newInputStream(f.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException eof) {
+                    break;
+                }
+                if (len <= 0 || len > MAX_RECORD) throw new IOException("longitud inválida " + len);
+                byte[] b = new byte[len];
+                in.readFully(b);
+                int expected = in.readInt();
+                CRC32 crc = new CRC32();
+                crc.update(b);
+                if ((int) crc.getValue() != expected) throw new IOException("checksum inválido");
+
+                DataInputStream body = new DataInputStream(new java.io.ByteArrayInputStream(b));
+                int opIdx = body.readUnsignedByte();
+                if (opIdx >= OPS.length) throw new IOException("tipo desconocido " + opIdx);
+                long s = body.readLong();
+                String landId = body.readUTF();
+                String name = body.readUTF();
+                java.math.BigDecimal bank = new java.math.BigDecimal(body.readUTF());
+                int issued = body.readInt();
+                long epoch = body.readLong();
+                sink.accept(new Entry(OPS[opIdx], s, new LandCurrency.Snapshot(landId, name, bank, issued, epoch)));
+                seq.accumulateAndGet(s, Math::max);
+                valid += 4 + len + 4;
+                n++;
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Journal " + f.getName() + " dañado tras " + n + " registros (offset " + valid + "): " + e.getMessage());
+            if (truncateTail) {
+                try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                } catch (IOException te) {
+                    plugin.getLogger().warning("No se pudo truncar el journal: " + te.getMessage());
+                }
+            }
+        }
+        return n;
+    }
+}
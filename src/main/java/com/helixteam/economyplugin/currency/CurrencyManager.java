@@ -2,486 +2,592 @@ package com.helixteam.economyplugin.currency;
 
 import com.helixteam.economyplugin.EconomyPlugin;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
  
 import java.util.ArrayList;
 import java.math.RoundingMode;
-import java.lang.reflect.Method;
 
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.PlayerInventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.World;
 import org.bukkit.entity.Entity;
 
 /**
  * Manager responsable de la persistencia y acceso a las monedas por Land.
- * Usa archivos YAML en `data/currency/<land_uuid>.yml`.
+ * El almacenamiento es un CurrencyRepository elegido con `currency.storage.backend`
+ * (por defecto YAML en `data/currency/<land_uuid>.yml`).
  */
 public class CurrencyManager {
 
     private final EconomyPlugin plugin;
-    private final CurrencyStorage storage;
-    private final Map<String, LandCurrency> currencies = new HashMap<>();
+    private final CurrencyRepository repository;
+    // escritura diferida por lotes de las monedas modificadas
+    private final CurrencyWriteBehind writeBehind;
+    // registro de solo-añadir de cada cambio; se reproduce al arrancar sobre los YAML
+    private final CurrencyJournal journal;
+    // monedas ya cargadas en memoria; el warm-up las publica desde otros hilos
+    private final Map<String, LandCurrency> currencies = new java.util.concurrent.ConcurrentHashMap<>();
+    // ids guardados en el repositorio, cargados o no (carga perezosa)
+    private final java.util.Set<String> knownIds = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    // cambia cuando aparecen o desaparecen lands (ver landIdArray)
+    private final java.util.concurrent.atomic.AtomicLong landIdsVersion = new java.util.concurrent.atomic.AtomicLong();
+    private volatile String[] landIdArray = new String[0];
+    private volatile long landIdArrayVersion = -1L;
+    // lands guardadas que se están cargando en segundo plano (ver restampBillIfLoaded)
+    private final java.util.Set<String> preloading = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    // hilos de carga en paralelo (currency.storage.load_threads)
+    private java.util.concurrent.ExecutorService loadExecutor = null;
     private final java.util.concurrent.ConcurrentHashMap<String, Object> landLocks = new java.util.concurrent.ConcurrentHashMap<>();
-    private final java.util.concurrent.ConcurrentHashMap<String, org.bukkit.scheduler.BukkitTask> pendingRefresh = new java.util.concurrent.ConcurrentHashMap<>();
-    private org.bukkit.scheduler.BukkitTask periodicSyncTask = null;
+    // sync periódico desde Lands repartido en el intervalo
+    private final LandSyncScheduler syncScheduler;
+    private final LandBankChangeQueue bankChanges;
+    private final RedemptionQueue redemptions;
+    // billetes de canjes fallidos de jugadores desconectados
+    private final PendingReturns pendingReturns;
+    private final LandsOutbox outbox;
+    // currency.bills.refresh_mode; se relee en loadAll (reload)
+    private volatile boolean lazyRefresh = true;
+    // poseedores de billetes por land (solo se mantiene en modo eager)
+    private final BillHolderIndex holderIndex;
+    // reparte los refrescos eager entre ticks con presupuesto de tiempo
+    private final BillRefreshScheduler refreshScheduler;
+    // plantillas de nombre/lore por land
+    private final BillRenderCache renderCache = new BillRenderCache();
 
     public CurrencyManager(EconomyPlugin plugin) {
         this.plugin = plugin;
-        this.storage = new CurrencyStorage(plugin);
+        this.repository = openRepository(plugin);
+        this.writeBehind = new CurrencyWriteBehind(plugin, repository);
+        this.journal = new CurrencyJournal(plugin, writeBehind);
+        this.holderIndex = new BillHolderIndex(plugin);
+        this.refreshScheduler = new BillRefreshScheduler(plugin, this);
+        this.syncScheduler = new LandSyncScheduler(plugin, this);
+        this.bankChanges = new LandBankChangeQueue(plugin, this);
+        this.redemptions = new RedemptionQueue(plugin, this);
+        this.pendingReturns = new PendingReturns(plugin);
+        this.outbox = new LandsOutbox(plugin, this);
+    }
+
+    /**
+     * Elige el motor según `currency.storage.backend` (yaml | mapped | sqlite | memory).
+     * Si el motor elegido no puede abrirse lanza CurrencyStorageException: nunca se cambia
+     * de almacenamiento a espaldas del administrador.
+     */
+    private static CurrencyRepository openRepository(EconomyPlugin plugin) {
+        String backend = plugin.getConfig().getString("currency.storage.backend", "yaml").toLowerCase();
+        switch (backend) {
+            case "mapped": {
+                MappedCurrencyStore mapped = new MappedCurrencyStore(plugin);
+                try {
+                    mapped.open();
+                    return mapped;
+                } catch (java.io.IOException | RuntimeException e) {
+                    mapped.close();
+                    throw new CurrencyStorageException("No se pudo abrir el almacenamiento mapeado: " + e.getMessage(), e);
+                }
+            }
+            case "sqlite": {
+                SqlCurrencyRepository sql = new SqlCurrencyRepository(plugin);
+                try {
+                    sql.open();
+                    return sql;
+                } catch (java.sql.SQLException | RuntimeException e) {
+                    sql.close();
+                    throw new CurrencyStorageException("No se pudo abrir SQLite: " + e.getMessage(), e);
+                }
+            }
+            case "memory":
+                plugin.getLogger().warning("currency.storage.backend=memory: las monedas no se guardarán en disco.");
+                return new InMemoryCurrencyRepository();
+            default:
+                return new CurrencyStorage(plugin);
+        }
+    }
+
+    /**
+     * Valor actual por billete de la Land: banco / billetes en circulación, truncado a 2 decimales.
+     */
+    public java.math.BigDecimal valuePerBill(LandCurrency lc) {
+        return valuePerBill(lc.state());
+    }
+
+    public java.math.BigDecimal valuePerBill(LandCurrency.State st) {
+        int totalCirculating = st.issuedCount();
+        if (totalCirculating <= 0) return java.math.BigDecimal.ZERO;
+        try {
+            return st.bankBalance().divide(java.math.BigDecimal.valueOf(totalCirculating), 2, RoundingMode.DOWN);
+        } catch (Exception e) {
+            return java.math.BigDecimal.ZERO;
+        }
     }
 
     /**
      * Recalcula el valor por billete para la Land indicada y actualiza:
      * - los BillData en memoria (LandCurrency)
      * - los PDC y lore de los ItemStacks en inventarios online y Item entities
+     *
+     * Es el modo "eager": recorre los poseedores registrados en BillHolderIndex
+     * (jugadores, entidades Item y contenedores abiertos) en lugar de todo el servidor.
+     * Se ejecuta entero en el tick actual; requestRefresh agrupa las lands sucias y
+     * reparte el trabajo entre ticks con BillRefreshScheduler.
+     * En modo "lazy" no se usa; los billetes se re-estampan al tocarse (ver restampBill).
      */
     public void refreshBillLore(String landId) {
         LandCurrency lc = getOrCreate(landId);
-        int totalCirculating = lc.getIssuedCount();
-        java.math.BigDecimal valuePer = java.math.BigDecimal.ZERO;
-        if (totalCirculating > 0) {
-            try {
-                valuePer = lc.getBankBalance().divide(java.math.BigDecimal.valueOf(totalCirculating), 2, RoundingMode.DOWN);
-            } catch (Exception e) {
-                valuePer = java.math.BigDecimal.ZERO;
-            }
-        }
 
         // Persistir cambios en disco
         save(lc);
 
-        // Actualizar inventarios de jugadores online
-        for (Player p : plugin.getServer().getOnlinePlayers()) {
-            PlayerInventory inv = p.getInventory();
-            // main inventory
-            for (int i = 0; i < inv.getSize(); i++) {
-                ItemStack it = inv.getItem(i);
-                if (it == null) continue;
-                BillData from = BillData.fromItem(it, plugin);
-                if (from == null) continue;
-                if (!from.getLandId().equals(landId)) continue;
-                // actualizar PDC y meta usando los datos del item pero con nuevo valor
-                BillData updated = new BillData("", from.getLandId(), valuePer, from.getIssueDate(), from.getExpireDate(), from.getMaterial());
-                updated.writeToItem(it, plugin);
-                var meta = it.getItemMeta();
-                if (meta != null) {
-                    String pretty = valuePer.stripTrailingZeros().toPlainString();
-                    // Display name must be only the currency name
-                    meta.setDisplayName(lc.getName() == null || lc.getName().isEmpty() ? "Land" : lc.getName());
-                    java.util.List<String> lore = new ArrayList<>();
-                    lore.add("Emisor: " + (lc.getName() == null || lc.getName().isEmpty() ? "-" : lc.getName()));
-                    lore.add("Valor: " + pretty);
-                    if (from.getExpireDate() != null && !from.getExpireDate().isEmpty()) lore.add("Vence: " + from.getExpireDate());
-                    meta.setLore(lore);
-                    it.setItemMeta(meta);
-                }
-                inv.setItem(i, it);
-            }
-
-            // offhand
-            try {
-                ItemStack off = inv.getItemInOffHand();
-                if (off != null) {
-                    BillData from = BillData.fromItem(off, plugin);
-                    if (from != null && from.getLandId().equals(landId)) {
-                        BillData updated = new BillData("", from.getLandId(), valuePer, from.getIssueDate(), from.getExpireDate(), from.getMaterial());
-                        updated.writeToItem(off, plugin);
-                        var meta = off.getItemMeta();
-                        if (meta != null) {
-                            String pretty = valuePer.stripTrailingZeros().toPlainString();
-                            meta.setDisplayName(lc.getName() == null || lc.getName().isEmpty() ? "Land" : lc.getName());
-                            java.util.List<String> lore = new ArrayList<>();
-                            lore.add("Emisor: " + (lc.getName() == null || lc.getName().isEmpty() ? "-" : lc.getName()));
-                            lore.add("Valor: " + pretty);
-                            if (from.getExpireDate() != null && !from.getExpireDate().isEmpty()) lore.add("Vence: " + from.getExpireDate());
-                            meta.setLore(lore);
-                            off.setItemMeta(meta);
-                        }
-                        inv.setItemInOffHand(off);
-                    }
-                }
-            } catch (Throwable ignored) {}
+        refreshScheduler.runNow(landId);
+    }
 
-            // armor
-            try {
-                ItemStack[] armor = inv.getArmorContents();
-                boolean changed = false;
-                for (int a = 0; a < armor.length; a++) {
-                    ItemStack arm = armor[a];
-                    if (arm == null) continue;
-                    BillData from = BillData.fromItem(arm, plugin);
-                    if (from == null) continue;
-                    if (!from.getLandId().equals(landId)) continue;
-                    BillData updated = new BillData("", from.getLandId(), valuePer, from.getIssueDate(), from.getExpireDate(), from.getMaterial());
-                    updated.writeToItem(arm, plugin);
-                    var meta = arm.getItemMeta();
-                    if (meta != null) {
-                        String pretty = valuePer.stripTrailingZeros().toPlainString();
-                        meta.setDisplayName(lc.getName() == null || lc.getName().isEmpty() ? "Land" : lc.getName());
-                        java.util.List<String> lore = new ArrayList<>();
-                        lore.add("Emisor: " + (lc.getName() == null || lc.getName().isEmpty() ? "-" : lc.getName()));
-                        lore.add("Valor: " + pretty);
-                        if (from.getExpireDate() != null && !from.getExpireDate().isEmpty()) lore.add("Vence: " + from.getExpireDate());
-                        meta.setLore(lore);
-                        arm.setItemMeta(meta);
-                    }
-                    armor[a] = arm;
-                    changed = true;
-                }
-                if (changed) inv.setArmorContents(armor);
-            } catch (Throwable ignored) {}
+    /**
+     * Porción de refresco: billetes de las lands indicadas en el inventario de un jugador
+     * (principal, mano secundaria y armadura). Un único recorrido del inventario sirve
+     * para todas las lands de la pasada.
+     */
+    void refreshPlayerBills(Player p, java.util.Set<String> lands) {
+        PlayerInventory inv = p.getInventory();
+        // main inventory
+        for (int i = 0; i < inv.getSize(); i++) {
+            ItemStack it = inv.getItem(i);
+            if (it == null) continue;
+            if (stampIfDirty(it, lands)) inv.setItem(i, it);
         }
 
-        // Actualizar entidades Item en los mundos
-        for (World w : plugin.getServer().getWorlds()) {
-            for (Entity e : w.getEntities()) {
-                if (!(e instanceof org.bukkit.entity.Item)) continue;
-                org.bukkit.entity.Item ie = (org.bukkit.entity.Item) e;
-                ItemStack is = ie.getItemStack();
-                if (is == null) continue;
-                BillData from = BillData.fromItem(is, plugin);
-                    if (from == null) continue;
-                    if (!from.getLandId().equals(landId)) continue;
-                    BillData updated = new BillData("", from.getLandId(), valuePer, from.getIssueDate(), from.getExpireDate(), from.getMaterial());
-                    updated.writeToItem(is, plugin);
-                    var meta = is.getItemMeta();
-                    if (meta != null) {
-                        String pretty = valuePer.stripTrailingZeros().toPlainString();
-                        meta.setDisplayName(lc.getName() == null || lc.getName().isEmpty() ? "Land" : lc.getName());
-                        java.util.List<String> lore = new ArrayList<>();
-                        lore.add("Emisor: " + (lc.getName() == null || lc.getName().isEmpty() ? "-" : lc.getName()));
-                        lore.add("Valor: " + pretty);
-                        if (from.getExpireDate() != null && !from.getExpireDate().isEmpty()) lore.add("Vence: " + from.getExpireDate());
-                        meta.setLore(lore);
-                        is.setItemMeta(meta);
-                    }
-                    ie.setItemStack(is);
+        // offhand
+        try {
+            ItemStack off = inv.getItemInOffHand();
+            if (off != null && stampIfDirty(off, lands)) inv.setItemInOffHand(off);
+        } catch (Throwable ignored) {}
+
+        // armor
+        try {
+            ItemStack[] armor = inv.getArmorContents();
+            boolean changed = false;
+            for (ItemStack arm : armor) {
+                if (arm == null) continue;
+                if (stampIfDirty(arm, lands)) changed = true;
             }
-        }
+            if (changed) inv.setArmorContents(armor);
+        } catch (Throwable ignored) {}
     }
 
-    public void loadAll() {
-        List<LandCurrency> all = storage.loadAll();
-        currencies.clear();
-        for (LandCurrency lc : all) {
-            currencies.put(lc.getLandId(), lc);
+    /**
+     * Porción de refresco: una entidad Item en el suelo.
+     */
+    void refreshItemBill(org.bukkit.entity.Item ie, java.util.Set<String> lands) {
+        ItemStack is = ie.getItemStack();
+        if (is == null) return;
+        BillData from = BillData.fromItem(is, plugin);
+        if (from == null) {
+            holderIndex.removeItem(ie.getUniqueId());
+            return;
         }
-        plugin.getLogger().info("Loaded " + currencies.size() + " land currencies from disk.");
+        if (!lands.contains(from.getLandId())) return;
+        LandCurrency lc = loaded(from.getLandId());
+        if (lc != null && stampBill(is, from, lc)) ie.setItemStack(is);
     }
 
-    public LandCurrency getOrCreate(String landId) {
-        return currencies.computeIfAbsent(landId, id -> {
-            LandCurrency lc = new LandCurrency(id, "");
-            storage.saveLandCurrency(lc);
-            return lc;
-        });
+    /**
+     * Porción de refresco: un contenedor abierto.
+     */
+    void refreshContainerBills(org.bukkit.inventory.Inventory inv, java.util.Set<String> lands) {
+        for (int i = 0; i < inv.getSize(); i++) {
+            ItemStack it = inv.getItem(i);
+            if (it == null) continue;
+            if (stampIfDirty(it, lands)) inv.setItem(i, it);
+        }
     }
 
-    public void save(LandCurrency currency) {
-        currencies.put(currency.getLandId(), currency);
-        storage.saveLandCurrency(currency);
+    private boolean stampIfDirty(ItemStack it, java.util.Set<String> lands) {
+        BillData from = BillData.fromItem(it, plugin);
+        if (from == null || !lands.contains(from.getLandId())) return false;
+        LandCurrency lc = loaded(from.getLandId());
+        return lc != null && stampBill(it, from, lc);
     }
 
     /**
-     * Ejecuta la operación provista bajo un lock asociado a la landId para evitar
-     * race conditions entre emisiones y canjeos.
+     * Re-estampa un billete si su época no coincide con la de su Land.
+     * Devuelve true si el ItemStack fue modificado (el llamador debe volver a colocarlo
+     * si la copia no está enlazada al inventario/entidad).
+     * No crea monedas nuevas: los billetes de lands desconocidas se dejan tal cual.
      */
-    public void runLocked(String landId, Runnable op) {
-        Object lock = landLocks.computeIfAbsent(landId, k -> new Object());
-        synchronized (lock) {
-            op.run();
-        }
+    public boolean restampBill(ItemStack item) {
+        if (item == null) return false;
+        BillData from = BillData.fromItem(item, plugin);
+        if (from == null) return false;
+        LandCurrency lc = loaded(from.getLandId());
+        if (lc == null) return false;
+        return stampBill(item, from, lc);
     }
 
     /**
-     * Pide una actualización (debounced) del lore y PDC de billetes para la land.
-     * Esto evita ejecutar refreshBillLore múltiples veces seguidas y protege el rendimiento.
+     * Como restampBill, pero sin leer del repositorio en este hilo: si la land del billete
+     * no está en memoria se pide su carga en segundo plano y el billete se deja como está
+     * (se re-estampará al tocarse). Para cargas de chunk/entidades en el hilo principal.
      */
-    public void requestRefresh(String landId) {
-        // Intentar reservar una tarea pendiente de forma atómica para evitar races
-        // Creamos la tarea y la insertamos solo si no existía otra
-        org.bukkit.scheduler.BukkitTask task = plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+    public boolean restampBillIfLoaded(ItemStack item) {
+        if (item == null) return false;
+        BillData from = BillData.fromItem(item, plugin);
+        if (from == null) return false;
+        LandCurrency lc = currencies.get(from.getLandId());
+        if (lc == null) {
+            preload(from.getLandId());
+            return false;
+        }
+        return stampBill(item, from, lc);
+    }
+
+    private void preload(String landId) {
+        if (!knownIds.contains(landId) || !preloading.add(landId)) return;
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
             try {
-                refreshBillLore(landId);
+                getOrCreate(landId);
+            } catch (Throwable t) {
+                plugin.getLogger().warning("Error cargando moneda " + landId + ": " + t.getMessage());
             } finally {
-                pendingRefresh.remove(landId);
+                preloading.remove(landId);
             }
-        }, 2L);
-        // Si ya existe una tarea, cancelar la recién creada y no reemplazarla
-        org.bukkit.scheduler.BukkitTask prev = pendingRefresh.putIfAbsent(landId, task);
-        if (prev != null) {
-            // ya había una tarea pendiente; cancelar la que acabamos de crear
-            try { task.cancel(); } catch (Throwable ignored) {}
-        }
+        });
     }
 
     /**
-     * Intento robusto de obtener el objeto Land desde LandsIntegration usando reflection
+     * Escribe el valor, la época y el lore actuales de la Land en el billete.
+     * No hace nada si el billete ya está estampado con la época vigente.
      */
-    private Object findLandById(String landId) {
-        var lands = plugin.getLands();
-        if (lands == null) return null;
-        Class<?> liCls = lands.getClass();
-
-        // try methods on Lands API with verbose logging
-        String[] tryNames = new String[]{"getLand", "getLandById", "findLandById", "getLandByULID", "getById", "get"};
-        for (String name : tryNames) {
+    private boolean stampBill(ItemStack item, BillData from, LandCurrency lc) {
+        // epoch, valor y nombre salen del mismo estado
+        LandCurrency.State st = lc.state();
+        long epoch = st.version();
+        if (from.getEpoch() == epoch) return false;
+        var meta = item.getItemMeta();
+        if (meta == null) return false;
+        java.math.BigDecimal valuePer = valuePerBill(st);
+        BillData updated = new BillData("", from.getLandId(), valuePer, from.getIssueDate(), from.getExpireDate(), from.getMaterial(), epoch);
+        // Nombre y lore desde la plantilla cacheada; PDC y presentación en un solo setItemMeta
+        renderCache.template(lc.getLandId(), st, valuePer, from.getExpireDate()).applyTo(meta);
+        plugin.getBillCodec().write(meta, updated);
+        item.setItemMeta(meta);
+        return true;
+    }
+
+    /**
+     * Indica si los billetes se actualizan de forma perezosa (por época) en lugar de
+     * reescribir todos los inventarios online tras cada cambio.
+     */
+    public boolean isLazyRefresh() {
+        return lazyRefresh;
+    }
+
+    public BillRenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    public BillHolderIndex getHolderIndex() {
+        return holderIndex;
+    }
+
+    public void loadAll() {
+        lazyRefresh = !"eager".equalsIgnoreCase(plugin.getConfig().getString("currency.bills.refresh_mode", "lazy"));
+        // El índice de poseedores solo se mantiene en modo eager: reconstruirlo al (re)cargar
+        if (lazyRefresh) holderIndex.clear();
+        else holderIndex.rebuild();
+        // en un reload, lo pendiente debe llegar a disco antes de releerlo
+        writeBehind.flush();
+        writeBehind.start();
+        stopLoading();
+        currencies.clear();
+        knownIds.clear();
+        renderCache.clear();
+
+        long start = System.nanoTime();
+        List<String> ids = repository.listIds();
+        knownIds.addAll(ids);
+        landIdsVersion.incrementAndGet();
+        boolean lazyLoad = !"eager".equalsIgnoreCase(plugin.getConfig().getString("currency.storage.load_mode", "lazy"));
+        int threads = Math.max(1, plugin.getConfig().getInt("currency.storage.load_threads", 4));
+        if (!lazyLoad) {
+            // carga completa antes de seguir, pero repartida entre varios hilos
+            loadInParallel(ids, threads).join();
+            long ms = Math.max(1L, (System.nanoTime() - start) / 1_000_000L);
+            plugin.getLogger().info("Loaded " + currencies.size() + " land currencies in " + ms + " ms ("
+                    + (currencies.size() * 1000L / ms) + " lands/s, " + threads + " threads).");
+        } else {
+            plugin.getLogger().info("Indexed " + ids.size() + " land currencies in "
+                    + (System.nanoTime() - start) / 1_000_000L + " ms (carga perezosa).");
+        }
+        // Solo al arrancar: en un reload la memoria ya se volcó y el journal sigue abierto
+        if (!journal.isStarted()) {
+            int replayed = journal.replay(this::applyJournalEntry);
+            if (replayed > 0) plugin.getLogger().info("Replayed " + replayed + " currency journal records.");
             try {
-                Method m = liCls.getMethod(name, String.class);
-                plugin.getDebugLogger().fine("Trying Lands method: " + name + "(String)");
-                try {
-                    Object res = m.invoke(lands, landId);
-                    plugin.getDebugLogger().fine("Result for " + name + ": " + (res == null ? "null" : res.toString()));
-                    if (res != null) return res;
-                } catch (IllegalAccessException | java.lang.reflect.InvocationTargetException e) {
-                    plugin.getLogger().warning("Error invoking " + name + " on LandsIntegration: " + e.getMessage());
-                }
-            } catch (NoSuchMethodException e) {
-                plugin.getDebugLogger().fine("Lands method not present: " + name);
+                journal.open();
+            } catch (java.io.IOException e) {
+                plugin.getLogger().severe("No se pudo abrir el journal de monedas: " + e.getMessage());
+            }
+            // journal deshabilitado: nadie lo vaciará; una vez volcado lo reproducido, borrarlo
+            // para que un journal viejo no se aplique en cada arranque
+            if (!journal.isEnabled()) {
+                if (writeBehind.flushAll()) journal.discard();
+                else if (replayed > 0) plugin.getLogger().warning("No se pudo volcar el journal reproducido; se conserva hasta el próximo arranque.");
             }
         }
+        if (lazyLoad && plugin.getConfig().getBoolean("currency.storage.warmup", true) && !ids.isEmpty()) {
+            long warmStart = System.nanoTime();
+            loadInParallel(ids, threads).thenRun(() -> {
+                long ms = Math.max(1L, (System.nanoTime() - warmStart) / 1_000_000L);
+                plugin.getLogger().info("Currency warm-up: " + currencies.size() + " lands in " + ms + " ms ("
+                        + (currencies.size() * 1000L / ms) + " lands/s, " + threads + " threads).");
+            });
+        }
+    }
 
-        // Intentar con UUID parameter
-        try {
-            java.util.UUID uid = java.util.UUID.fromString(landId);
-            for (Method m : liCls.getMethods()) {
-                if (!m.getName().toLowerCase().contains("land")) continue;
-                var params = m.getParameterTypes();
-                if (params.length == 1 && params[0].equals(java.util.UUID.class)) {
+    /**
+     * Carga en paralelo las lands indicadas que aún no estén en memoria. Lo ya cargado
+     * (o creado entretanto por getOrCreate) no se sobrescribe.
+     */
+    private java.util.concurrent.CompletableFuture<Void> loadInParallel(List<String> ids, int threads) {
+        java.util.concurrent.ExecutorService ex = java.util.concurrent.Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Helieco-CurrencyLoad");
+            t.setDaemon(true);
+            return t;
+        });
+        loadExecutor = ex;
+        int chunk = Math.max(64, ids.size() / (threads * 4) + 1);
+        List<java.util.concurrent.CompletableFuture<Void>> parts = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunk) {
+            List<String> part = ids.subList(from, Math.min(ids.size(), from + chunk));
+            parts.add(java.util.concurrent.CompletableFuture.runAsync(() -> {
+                for (String id : part) {
+                    if (Thread.currentThread().isInterrupted()) return;
+                    if (currencies.containsKey(id)) continue;
                     try {
-                        Object res = m.invoke(lands, uid);
-                        if (res != null) return res;
-                    } catch (Throwable ignored) {}
+                        LandCurrency lc = repository.load(id);
+                        if (lc != null) currencies.putIfAbsent(id, lc);
+                    } catch (Throwable t) {
+                        plugin.getLogger().warning("Error cargando moneda " + id + ": " + t.getMessage());
+                    }
                 }
-            }
-        } catch (IllegalArgumentException ignored) {}
+            }, ex));
+        }
+        return java.util.concurrent.CompletableFuture.allOf(parts.toArray(new java.util.concurrent.CompletableFuture[0]))
+                .whenComplete((v, t) -> ex.shutdown());
+    }
 
-        // Fallback: inspeccionar métodos que acepten String y devolver algo útil
-        for (Method m : liCls.getMethods()) {
-            var params = m.getParameterTypes();
-            if (params.length == 1 && params[0].equals(String.class) && m.getName().toLowerCase().contains("land")) {
-                try {
-                    Object res = m.invoke(lands, landId);
-                    if (res != null) return res;
-                } catch (Throwable ignored) {}
-            }
+    private void stopLoading() {
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+            loadExecutor = null;
         }
+    }
 
-        // Nueva estrategia: intentar obtener colecciones de lands y buscar coincidencias por ULID
-        plugin.getDebugLogger().fine("findLandById: intentando búsqueda por colección/iterables en LandsIntegration");
-        for (Method m : liCls.getMethods()) {
-            try {
-                // Solo métodos sin parámetros
-                if (m.getParameterCount() != 0) continue;
-                Class<?> ret = m.getReturnType();
-                boolean looksLikeCollection = java.util.Collection.class.isAssignableFrom(ret) || ret.isArray() || java.lang.Iterable.class.isAssignableFrom(ret) || java.util.Map.class.isAssignableFrom(ret);
-                if (!looksLikeCollection) continue;
-                plugin.getDebugLogger().fine("Invoking candidate method for collections: " + m.getName());
-                Object out = null;
-                try { out = m.invoke(lands); } catch (Throwable t) { plugin.getDebugLogger().fine("Invocation failed for " + m.getName() + ": " + t.getMessage()); continue; }
-                if (out == null) continue;
-
-                java.util.Iterator<?> iter = null;
-                if (out.getClass().isArray()) {
-                    // manejar arrays de cualquier tipo de forma segura
-                    int len = java.lang.reflect.Array.getLength(out);
-                    for (int ai = 0; ai < len; ai++) {
-                        Object candidate = java.lang.reflect.Array.get(out, ai);
-                        if (candidate == null) continue;
-                        // Comprobar candidato
-                        try {
-                            String ts = candidate.toString();
-                            if (ts != null && ts.contains(landId)) {
-                                plugin.getDebugLogger().fine("findLandById: matched land via collection method " + m.getName());
-                                return candidate;
-                            }
-                        } catch (Throwable ignored) {}
-                        try {
-                            for (String gid : new String[]{"getUlid", "getULID", "getId", "getLandId", "ulid"}) {
-                                try {
-                                    Method gm = candidate.getClass().getMethod(gid);
-                                    Object val = gm.invoke(candidate);
-                                    if (val != null && val.toString().equals(landId)) {
-                                        plugin.getDebugLogger().fine("findLandById: matched land via getter " + gid + " on " + m.getName());
-                                        return candidate;
-                                    }
-                                } catch (NoSuchMethodException ignored) {}
-                            }
-                        } catch (Throwable ignored) {}
-                    }
-                    continue;
-                } else if (out instanceof java.util.Map) {
-                    iter = ((java.util.Map<?,?>) out).values().iterator();
-                } else if (out instanceof java.util.Collection) {
-                    iter = ((java.util.Collection<?>) out).iterator();
-                } else if (out instanceof java.lang.Iterable) {
-                    iter = ((java.lang.Iterable<?>) out).iterator();
-                }
+    /**
+     * Devuelve la moneda si existe, cargándola del repositorio si aún no está en memoria.
+     * No crea monedas nuevas.
+     */
+    private LandCurrency loaded(String landId) {
+        LandCurrency lc = currencies.get(landId);
+        if (lc != null || !knownIds.contains(landId)) return lc;
+        return getOrCreate(landId);
+    }
 
-                if (iter == null) continue;
-                while (iter.hasNext()) {
-                    Object candidate = iter.next();
-                    if (candidate == null) continue;
-                    // Comprobar toString
-                    try {
-                        String ts = candidate.toString();
-                        if (ts != null && ts.contains(landId)) {
-                            plugin.getDebugLogger().fine("findLandById: matched land via collection method " + m.getName());
-                            return candidate;
-                        }
-                    } catch (Throwable ignored) {}
-                    // Comprobar getters comunes en el objeto land
-                    try {
-                        for (String gid : new String[]{"getUlid", "getULID", "getId", "getLandId", "ulid"}) {
-                            try {
-                                Method gm = candidate.getClass().getMethod(gid);
-                                Object val = gm.invoke(candidate);
-                                if (val != null && val.toString().equals(landId)) {
-                                    plugin.getDebugLogger().fine("findLandById: matched land via getter " + gid + " on " + m.getName());
-                                    return candidate;
-                                }
-                            } catch (NoSuchMethodException ignored) {}
-                        }
-                    } catch (Throwable ignored) {}
-                }
-            } catch (Throwable t) {
-                // defensa: no dejar que una excepción rompa la búsqueda
-                plugin.getDebugLogger().fine("Error scanning method " + m.getName() + ": " + t.getMessage());
-            }
+    /**
+     * Devuelve la moneda de la land, creándola en memoria si no existe. Una moneda nueva
+     * no se escribe a disco hasta que alguien la guarde con save().
+     */
+    public LandCurrency getOrCreate(String landId) {
+        LandCurrency lc = currencies.get(landId);
+        if (lc != null) return lc;
+        return currencies.computeIfAbsent(landId, id -> {
+            // carga perezosa: primera vez que se pide una land guardada. Si el repositorio
+            // falla, CurrencyStorageException sale de aquí sin crear una moneda vacía que
+            // luego se guardaría encima de la real.
+            LandCurrency stored = knownIds.contains(id) ? repository.load(id) : null;
+            if (stored != null) return stored;
+            landIdsVersion.incrementAndGet();
+            return new LandCurrency(id, "");
+        });
+    }
+
+    /**
+     * Registra el estado actual de la moneda para persistirlo. La escritura es diferida
+     * (ver CurrencyWriteBehind); solo se copia el estado en este momento.
+     */
+    public void save(LandCurrency currency) {
+        save(currency, CurrencyJournal.Op.STATE);
+    }
+
+    /**
+     * Como save(), registrando además en el journal la operación que produjo el estado.
+     */
+    public void save(LandCurrency currency, CurrencyJournal.Op op) {
+        currencies.put(currency.getLandId(), currency);
+        if (knownIds.add(currency.getLandId())) landIdsVersion.incrementAndGet();
+        LandCurrency.Snapshot snap = currency.snapshot();
+        // pendiente antes que registrado: una compactación entre ambos pasos no puede
+        // descartar un registro cuyo estado aún no iba a volcarse
+        writeBehind.markDirty(snap);
+        journal.append(op, snap);
+    }
+
+    /**
+     * Aplica un registro del journal si es más nuevo que lo cargado del YAML.
+     */
+    private void applyJournalEntry(CurrencyJournal.Entry e) {
+        LandCurrency.Snapshot s = e.state();
+        LandCurrency lc = loaded(s.landId());
+        // el YAML puede ir por delante del journal si el volcado adelantó a un registro perdido
+        if (lc != null && s.valuationEpoch() < lc.getValuationEpoch()) return;
+        if (lc == null) lc = getOrCreate(s.landId());
+        lc.restore(s);
+        if (knownIds.add(s.landId())) landIdsVersion.incrementAndGet();
+        writeBehind.markDirty(s);
+    }
+
+    /**
+     * Detiene las tareas de la moneda y escribe a disco lo pendiente. Llamar en onDisable.
+     */
+    public void shutdown() {
+        // cada paso por separado: un fallo no debe impedir volcar monedas ni cerrar el journal
+        // canjes en custodia: liquidarlos antes de volcar el estado
+        shutdownStep("canjes", redemptions::settleAll);
+        shutdownStep("devoluciones pendientes", pendingReturns::save);
+        shutdownStep("outbox de Lands", outbox::stop);
+        shutdownStep("sync push", bankChanges::stop);
+        shutdownStep("sync periódico", syncScheduler::stop);
+        shutdownStep("refresco de billetes", refreshScheduler::stop);
+        shutdownStep("carga", this::stopLoading);
+        boolean[] clean = {false};
+        shutdownStep("volcado de monedas", () -> clean[0] = writeBehind.shutdown());
+        // con todos los YAML al día el journal ya no hace falta
+        shutdownStep("journal", () -> journal.close(clean[0]));
+        shutdownStep("repositorio", repository::close);
+    }
+
+    private void shutdownStep(String what, Runnable step) {
+        try {
+            step.run();
+        } catch (Throwable t) {
+            plugin.getLogger().severe("Error al apagar la moneda (" + what + "): " + t);
         }
-        return null;
     }
 
-    private java.math.BigDecimal readBankFromLandObject(Object land) {
-        if (land == null) return null;
-        Class<?> cls = land.getClass();
-        String[] names = new String[]{"getBank", "getBalance", "getBankBalance", "getMoney", "getBankAmount", "getBalanceAmount", "getVaultBalance", "getDeposit"};
-        for (String n : names) {
+    /**
+     * Ejecuta una consulta sobre el repositorio fuera del hilo principal (tras volcar lo
+     * pendiente) y entrega el resultado en el hilo principal.
+     */
+    public <T> void queryAsync(java.util.function.Function<CurrencyRepository, T> query, java.util.function.Consumer<T> callback) {
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            T result;
             try {
-                Method m = cls.getMethod(n);
-                Object out = m.invoke(land);
-                if (out == null) continue;
-                if (out instanceof java.math.BigDecimal) return (java.math.BigDecimal) out;
-                if (out instanceof Number) return java.math.BigDecimal.valueOf(((Number) out).doubleValue());
-                String s = out.toString();
-                try { return new java.math.BigDecimal(s); } catch (Exception ignored) {}
-            } catch (NoSuchMethodException ignored) {
+                writeBehind.flush();
+                result = query.apply(repository);
             } catch (Throwable t) {
-                plugin.getLogger().warning("Error reading bank from Land object: " + t.getMessage());
+                plugin.getLogger().warning("Error consultando monedas: " + t.getMessage());
+                return;
             }
-        }
+            plugin.getServer().getScheduler().runTask(plugin, () -> callback.accept(result));
+        });
+    }
 
-        // Fallback: inspeccionar cualquier método sin parámetros que parezca devolver balance
-        for (Method m : cls.getMethods()) {
-            if (m.getParameterCount() != 0) continue;
-            String nm = m.getName().toLowerCase();
-            if (!(nm.contains("bank") || nm.contains("balance") || nm.contains("money") || nm.contains("deposit"))) continue;
-            try {
-                Object out = m.invoke(land);
-                if (out == null) continue;
-                if (out instanceof java.math.BigDecimal) return (java.math.BigDecimal) out;
-                if (out instanceof Number) return java.math.BigDecimal.valueOf(((Number) out).doubleValue());
-                try { return new java.math.BigDecimal(out.toString()); } catch (Exception ignored) {}
-            } catch (Throwable ignored) {}
-        }
-        return null;
-    }
-
-    private boolean writeBankToLandObject(Object land, java.math.BigDecimal amount) {
-        if (land == null) return false;
-        Class<?> cls = land.getClass();
-        String[] tryNames = new String[]{"setBankBalance", "setBalance", "setBank", "setDeposit", "updateBalance", "setBankAmount"};
-        for (String n : tryNames) {
-            for (Method m : cls.getMethods()) {
-                if (!m.getName().equalsIgnoreCase(n)) continue;
-                var params = m.getParameterTypes();
-                if (params.length != 1) continue;
-                try {
-                    if (params[0].equals(java.math.BigDecimal.class)) { m.invoke(land, amount); return true; }
-                    if (params[0].equals(double.class) || params[0].equals(Double.class)) { m.invoke(land, amount.doubleValue()); return true; }
-                    if (params[0].equals(long.class) || params[0].equals(Long.class)) { m.invoke(land, amount.longValue()); return true; }
-                    if (params[0].equals(String.class)) { m.invoke(land, amount.toPlainString()); return true; }
-                } catch (Throwable t) {
-                    plugin.getLogger().warning("Error writing bank to Land object via " + m.getName() + ": " + t.getMessage());
-                }
-            }
-        }
+    public int getPendingWrites() {
+        return writeBehind.getPendingCount();
+    }
 
-        // Fallback: buscar cualquier método que acepte un parámetro numérico y cuyo nombre contenga bank/balance
-        for (Method m : cls.getMethods()) {
-            String nm = m.getName().toLowerCase();
-            if (!(nm.contains("bank") || nm.contains("balance") || nm.contains("deposit"))) continue;
-            var params = m.getParameterTypes();
-            if (params.length != 1) continue;
-            try {
-                Class<?> p = params[0];
-                if (p.equals(double.class) || p.equals(Double.class)) { m.invoke(land, amount.doubleValue()); return true; }
-                if (p.equals(long.class) || p.equals(Long.class)) { m.invoke(land, amount.longValue()); return true; }
-                if (p.equals(String.class)) { m.invoke(land, amount.toPlainString()); return true; }
-            } catch (Throwable ignored) {}
+    /**
+     * Ejecuta la operación provista bajo un lock asociado a la landId para evitar
+     * race conditions entre emisiones y canjeos.
+     * Solo hace falta para operaciones de varios pasos (calcular valor, pagar, revertir):
+     * los cambios sueltos de LandCurrency ya son atómicos.
+     */
+    public void runLocked(String landId, Runnable op) {
+        Object lock = landLocks.computeIfAbsent(landId, k -> new Object());
+        synchronized (lock) {
+            op.run();
         }
+    }
 
-        // Si no encontramos cómo escribir, intentar obtener un objeto bank y buscar setBalance
-        for (Method m : cls.getMethods()) {
-            if (m.getParameterCount() != 0) continue;
-            String nm = m.getName().toLowerCase();
-            if (!(nm.contains("bank") || nm.contains("account"))) continue;
-            try {
-                Object bankObj = m.invoke(land);
-                if (bankObj == null) continue;
-                Class<?> bcls = bankObj.getClass();
-                for (Method bm : bcls.getMethods()) {
-                    String bmn = bm.getName().toLowerCase();
-                    if (!(bmn.contains("set") && (bmn.contains("balance") || bmn.contains("amount")))) continue;
-                    var params = bm.getParameterTypes();
-                    if (params.length != 1) continue;
-                    try {
-                        if (params[0].equals(java.math.BigDecimal.class)) { bm.invoke(bankObj, amount); return true; }
-                        if (params[0].equals(double.class) || params[0].equals(Double.class)) { bm.invoke(bankObj, amount.doubleValue()); return true; }
-                        if (params[0].equals(String.class)) { bm.invoke(bankObj, amount.toPlainString()); return true; }
-                    } catch (Throwable ignored) {}
-                }
-            } catch (Throwable ignored) {}
-        }
+    /**
+     * Pide una actualización del lore y PDC de billetes para la land.
+     * En modo eager solo marca la land como sucia: BillRefreshScheduler actualiza todas
+     * las lands sucias en una única pasada por sus poseedores, repartida entre ticks.
+     * En modo lazy es O(1): no programa ningún recorrido.
+     * Seguro desde hilos async.
+     */
+    public void requestRefresh(String landId) {
+        // En modo lazy la época ya se incrementó al modificar la LandCurrency: los
+        // billetes se re-estamparán cuando se toquen, así que no hay nada que recorrer.
+        if (isLazyRefresh()) return;
+        refreshScheduler.request(landId);
+    }
+
+    /**
+     * Arranca (o reinicia tras un reload) el motor de refresco por ticks.
+     */
+    public void startBillRefresh() {
+        refreshScheduler.start();
+    }
 
-        return false;
+    public BillRefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
     }
 
+    public enum SyncResult { CHANGED, UNCHANGED, FAILED }
+
     /**
      * Intenta leer el balance desde Lands y escribirlo en la LandCurrency local.
      */
     public boolean syncFromLands(String landId) {
+        return syncFromLandsDetailed(landId) != SyncResult.FAILED;
+    }
+
+    /**
+     * Como syncFromLands, indicando además si el banco cambió. Si no cambió no se
+     * guarda nada ni se piden refrescos de billetes.
+     * Lectura, comparación y escritura van bajo el lock de la land (se llama desde los
+     * workers de sync, el drain push y los canjes), así no pisa un canje o revert en curso.
+     * El saldo guardado es el de Lands más lo pendiente en el outbox para esa land.
+     */
+    public SyncResult syncFromLandsDetailed(String landId) {
+        SyncResult[] result = {SyncResult.FAILED};
         try {
-            Object land = findLandById(landId);
-            if (land == null) {
-                // do not spam logs if land not found during periodic runs
-                plugin.getDebugLogger().finer("syncFromLands: no se encontró Land para id=" + landId);
-                return false;
-            }
-            java.math.BigDecimal bank = readBankFromLandObject(land);
-            if (bank == null) {
-                plugin.getDebugLogger().finer("syncFromLands: no se pudo leer banco desde Land " + landId);
-                return false;
-            }
-            var lc = getOrCreate(landId);
-            lc.setBankBalance(bank);
-            save(lc);
-            requestRefresh(landId);
-            // Log successful sync only if configured to do so (reduces log noise)
-                if (plugin.getConfig().getBoolean("currency.sync.log_success", false)) {
-                plugin.getLogger().info("Sincronizado banco desde Lands para " + landId + ": " + bank);
-            } else {
-                plugin.getDebugLogger().finer("Sincronizado banco desde Lands para " + landId);
-            }
-            return true;
+            runLocked(landId, () -> result[0] = syncFromLandsLocked(landId));
         } catch (Throwable t) {
             plugin.getLogger().warning("Error en syncFromLands(" + landId + "): " + t.getMessage());
-            return false;
+            return SyncResult.FAILED;
         }
+        return result[0];
+    }
+
+    private SyncResult syncFromLandsLocked(String landId) {
+        Object land = plugin.getLandsGateway().findLand(landId);
+        if (land == null) {
+            // do not spam logs if land not found during periodic runs
+            plugin.getDebugLogger().finer("syncFromLands: no se encontró Land para id=" + landId);
+            return SyncResult.FAILED;
+        }
+        java.math.BigDecimal bank = plugin.getLandsGateway().readBank(land);
+        if (bank == null) {
+            plugin.getDebugLogger().finer("syncFromLands: no se pudo leer banco desde Land " + landId);
+            return SyncResult.FAILED;
+        }
+        // lo que aún espera en el outbox todavía no está en Lands: sin sumarlo, un sync
+        // durante la ventana devolvería al banco lo ya pagado en canjes
+        bank = bank.add(outbox.pendingDelta(landId));
+        var lc = getOrCreate(landId);
+        if (lc.getBankBalance().compareTo(bank) == 0) return SyncResult.UNCHANGED;
+        lc.setBankBalance(bank);
+        save(lc, CurrencyJournal.Op.SYNC_IN);
+        requestRefresh(landId);
+        // Log successful sync only if configured to do so (reduces log noise)
+        if (plugin.getConfig().getBoolean("currency.sync.log_success", false)) {
+            plugin.getLogger().info("Sincronizado banco desde Lands para " + landId + ": " + bank);
+        } else {
+            plugin.getDebugLogger().finer("Sincronizado banco desde Lands para " + landId);
+        }
+        return SyncResult.CHANGED;
     }
 
     /**
@@ -489,13 +595,17 @@ public class CurrencyManager {
      */
     public boolean syncToLands(String landId, java.math.BigDecimal amount) {
         try {
-            Object land = findLandById(landId);
+            Object land = plugin.getLandsGateway().findLand(landId);
             if (land == null) {
                 plugin.getDebugLogger().fine("syncToLands: no se encontró Land para id=" + landId);
                 return false;
             }
-            boolean ok = writeBankToLandObject(land, amount == null ? java.math.BigDecimal.ZERO : amount);
-            if (ok) plugin.getDebugLogger().fine("Escrito banco hacia Lands para " + landId + ": " + amount);
+            boolean ok = plugin.getLandsGateway().writeBank(land, amount == null ? java.math.BigDecimal.ZERO : amount);
+            if (ok) {
+                plugin.getDebugLogger().fine("Escrito banco hacia Lands para " + landId + ": " + amount);
+                LandCurrency lc = currencies.get(landId);
+                if (lc != null) journalSyncOut(lc);
+            }
             else plugin.getLogger().warning("No se encontró método para escribir banco en Land " + landId);
             return ok;
         } catch (Throwable t) {
@@ -504,47 +614,92 @@ public class CurrencyManager {
         }
     }
 
+    /**
+     * Encola un movimiento del banco hacia Lands (positivo = ingreso). Ver LandsOutbox.
+     */
+    public void pushBankDelta(String landId, java.math.BigDecimal delta) {
+        outbox.record(landId, delta);
+    }
+
+    void journalSyncOut(LandCurrency lc) {
+        journal.append(CurrencyJournal.Op.SYNC_OUT, lc.snapshot());
+    }
+
+    public LandsOutbox getOutbox() {
+        return outbox;
+    }
+
     public void startPeriodicSync() {
-        // cancelar si ya hay tarea
-        if (periodicSyncTask != null) {
-            try { periodicSyncTask.cancel(); } catch (Throwable ignored) {}
-            periodicSyncTask = null;
-        }
-        boolean enabled = plugin.getConfig().getBoolean("currency.sync.enabled", false);
-        int secs = plugin.getConfig().getInt("currency.sync.interval_seconds", 300);
-        if (!enabled || secs <= 0) return;
-        long ticks = secs * 20L;
-        periodicSyncTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-            try {
-                // Run sync for each land, but avoid noisy per-land logs. Collect summary counts.
-                int total = 0;
-                int succeeded = 0;
-                int failed = 0;
-                for (String id : new ArrayList<>(currencies.keySet())) {
-                    total++;
-                    try {
-                        boolean ok = syncFromLands(id);
-                        if (ok) succeeded++; else failed++;
-                    } catch (Throwable ignored) {
-                        failed++;
-                    }
-                }
-                // Only log summary if there were any failures or if configured to log successes
-                boolean logSuccess = plugin.getConfig().getBoolean("currency.sync.log_success", false);
-                if (failed > 0 || logSuccess) {
-                        plugin.getLogger().info("Periodic sync summary: total=" + total + " succeeded=" + succeeded + " failed=" + failed);
-                } else {
-                    plugin.getDebugLogger().finer("Periodic sync completed: total=" + total + " succeeded=" + succeeded);
-                }
-            } catch (Throwable t) {
-                plugin.getLogger().warning("Error en periodic sync: " + t.getMessage());
-            }
-        }, 20L, ticks);
-        plugin.getDebugLogger().fine("Periodic sync scheduled every " + secs + " seconds.");
+        outbox.start();
+        bankChanges.start();
+        syncScheduler.start();
+    }
+
+    public RedemptionQueue getRedemptions() {
+        return redemptions;
+    }
+
+    public PendingReturns getPendingReturns() {
+        return pendingReturns;
+    }
+
+    public LandBankChangeQueue getBankChangeQueue() {
+        return bankChanges;
+    }
+
+    public LandSyncScheduler getSyncScheduler() {
+        return syncScheduler;
+    }
+
+    /**
+     * Máximo de bytes UTF-8 de un nombre de moneda en el almacenamiento activo.
+     */
+    public int getMaxNameBytes() {
+        return repository.getMaxNameBytes();
+    }
+
+    /**
+     * Devuelve la moneda si ya está en memoria, sin crearla.
+     */
+    public LandCurrency getIfLoaded(String landId) {
+        return currencies.get(landId);
     }
 
     public boolean hasCurrency(String landId) {
-        return currencies.containsKey(landId);
+        return currencies.containsKey(landId) || knownIds.contains(landId);
+    }
+
+    /**
+     * Ids de todas las lands con moneda, estén cargadas o no.
+     */
+    public java.util.Set<String> knownLandIds() {
+        java.util.Set<String> ids = new java.util.HashSet<>(knownIds);
+        ids.addAll(currencies.keySet());
+        return ids;
+    }
+
+    /**
+     * Versión del conjunto de lands: cambia solo cuando se añaden o desaparecen lands.
+     */
+    public long getLandIdsVersion() {
+        return landIdsVersion.get();
+    }
+
+    /**
+     * Los mismos ids que knownLandIds() en un array estable, reconstruido solo cuando cambia
+     * getLandIdsVersion(). No se debe modificar.
+     */
+    public String[] landIdArray() {
+        long v = landIdsVersion.get();
+        if (landIdArrayVersion != v) {
+            synchronized (landIdsVersion) {
+                if (landIdArrayVersion != v) {
+                    landIdArray = knownLandIds().toArray(new String[0]);
+                    landIdArrayVersion = v;
+                }
+            }
+        }
+        return landIdArray;
     }
 
 }
@@ -0,0 +1,87 @@
+package com.helixteam.economyplugin.currency;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Almacenamiento persistente de las monedas por Land.
+ *
+ * Implementaciones: CurrencyStorage (YAML, un archivo por land), MappedCurrencyStore
+ * (archivo mapeado), SqlCurrencyRepository (SQLite) e InMemoryCurrencyRepository.
+ * Se elige con `currency.storage.backend`. Los métodos pueden llamarse desde hilos async.
+ */
+public interface CurrencyRepository {
+
+    /**
+     * Devuelve la moneda guardada o null si no existe.
+     * Lanza CurrencyStorageException si no se pudo consultar (nunca null en ese caso).
+     */
+    LandCurrency load(String landId);
+
+    List<LandCurrency> loadAll();
+
+    /**
+     * Ids de todas las lands guardadas, sin cargar su contenido.
+     * Lanza CurrencyStorageException si no se pudo consultar.
+     */
+    default List<String> listIds() {
+        List<String> out = new ArrayList<>();
+        for (LandCurrency lc : loadAll()) out.add(lc.getLandId());
+        return out;
+    }
+
+    /**
+     * Guarda una copia. Devuelve false si no se pudo escribir.
+     */
+    boolean save(LandCurrency.Snapshot snapshot);
+
+    /**
+     * Guarda un lote y devuelve las copias que no pudieron escribirse.
+     */
+    default List<LandCurrency.Snapshot> saveAll(List<LandCurrency.Snapshot> batch) {
+        List<LandCurrency.Snapshot> failed = new ArrayList<>();
+        for (LandCurrency.Snapshot s : batch) {
+            if (!save(s)) failed.add(s);
+        }
+        sync();
+        return failed;
+    }
+
+    /**
+     * Lleva a disco lo escrito hasta ahora.
+     */
+    default void sync() {
+    }
+
+    default void close() {
+    }
+
+    /**
+     * Máximo de bytes UTF-8 que admite un nombre de moneda en este almacenamiento.
+     */
+    default int getMaxNameBytes() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Lands con más banco, de mayor a menor.
+     */
+    default List<LandCurrency.Snapshot> topByBank(int limit) {
+        List<LandCurrency.Snapshot> all = new ArrayList<>();
+        for (LandCurrency lc : loadAll()) all.add(lc.snapshot());
+        all.sort(Comparator.comparing(LandCurrency.Snapshot::bankBalance).reversed());
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    /**
+     * Lands con billetes en circulación.
+     */
+    default List<LandCurrency.Snapshot> withOutstandingBills() {
+        List<LandCurrency.Snapshot> out = new ArrayList<>();
+        for (LandCurrency lc : loadAll()) {
+            if (lc.getIssuedCount() > 0) out.add(lc.snapshot());
+        }
+        return out;
+    }
+}
@@ -5,11 +5,19 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
  
 
-public class CurrencyStorage {
+/**
+ * Repositorio YAML: un archivo por Land en `data/currency/<land>.yml`.
+ */
+public class CurrencyStorage implements CurrencyRepository {
 
     private final EconomyPlugin plugin;
     private final File dataDir;
@@ -20,43 +28,73 @@ public class CurrencyStorage {
         if (!dataDir.exists()) dataDir.mkdirs();
     }
 
-    public void saveLandCurrency(LandCurrency currency) {
-        File f = new File(dataDir, currency.getLandId() + ".yml");
-        FileConfiguration cfg = YamlConfiguration.loadConfiguration(f);
+    /**
+     * Escribe una copia inmutable de la moneda. Seguro desde hilos async: no lee el
+     * archivo existente y lo reemplaza de forma atómica (temporal + rename), así que un
+     * crash a mitad de escritura nunca deja un YAML truncado.
+     * Devuelve false si no se pudo escribir.
+     */
+    @Override
+    public boolean save(LandCurrency.Snapshot currency) {
+        File f = new File(dataDir, currency.landId() + ".yml");
+        FileConfiguration cfg = new YamlConfiguration();
 
-        cfg.set("landId", currency.getLandId());
-        cfg.set("name", currency.getName());
+        cfg.set("landId", currency.landId());
+        cfg.set("name", currency.name());
         // store bankBalance as string to preserve precision
-        cfg.set("bankBalance", currency.getBankBalance() == null ? "0" : currency.getBankBalance().toPlainString());
+        cfg.set("bankBalance", currency.bankBalance() == null ? "0" : currency.bankBalance().toPlainString());
 
         // issued count (number of bills in circulation)
-        cfg.set("issuedCount", currency.getIssuedCount());
+        cfg.set("issuedCount", currency.issuedCount());
+        // valuation epoch stamped on bills (lazy refresh)
+        cfg.set("valuationEpoch", currency.valuationEpoch());
 
         try {
-            cfg.save(f);
+            Path target = f.toPath();
+            Path tmp = new File(dataDir, currency.landId() + ".yml.tmp").toPath();
+            Files.write(tmp, cfg.saveToString().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
             boolean logSave = plugin.getConfig().getBoolean("currency.storage.log_save", false);
             if (logSave) plugin.getLogger().info("Saved currency file: " + f.getAbsolutePath());
             else plugin.getDebugLogger().fine("Saved currency file: " + f.getAbsolutePath());
+            return true;
         } catch (Exception e) {
-            plugin.getLogger().severe("No se pudo guardar currency for land " + currency.getLandId() + ": " + e.getMessage());
+            plugin.getLogger().severe("No se pudo guardar currency for land " + currency.landId() + ": " + e.getMessage());
+            return false;
         }
     }
 
-    public LandCurrency loadLandCurrency(String landId) {
+    /**
+     * Lee la moneda del YAML. Un archivo ilegible o con un banco no numérico lanza
+     * CurrencyStorageException: nunca se devuelve una moneda a cero en su lugar.
+     */
+    @Override
+    public LandCurrency load(String landId) {
         File f = new File(dataDir, landId + ".yml");
         if (!f.exists()) return null;
-        FileConfiguration cfg = YamlConfiguration.loadConfiguration(f);
+        YamlConfiguration cfg = new YamlConfiguration();
+        try {
+            cfg.load(f);
+        } catch (Exception e) {
+            throw new CurrencyStorageException("YAML de moneda ilegible (" + f.getName() + "): " + e.getMessage(), e);
+        }
 
         String name = cfg.getString("name", "");
         java.math.BigDecimal bank;
         if (cfg.isString("bankBalance")) {
             try {
                 bank = new java.math.BigDecimal(cfg.getString("bankBalance"));
-            } catch (Exception e) {
-                bank = java.math.BigDecimal.valueOf(cfg.getDouble("bankBalance", 0.0));
+            } catch (NumberFormatException e) {
+                throw new CurrencyStorageException("bankBalance inválido en " + f.getName(), e);
             }
-        } else {
+        } else if (cfg.isDouble("bankBalance") || cfg.isInt("bankBalance") || cfg.isLong("bankBalance")) {
             bank = java.math.BigDecimal.valueOf(cfg.getDouble("bankBalance", 0.0));
+        } else {
+            throw new CurrencyStorageException("falta bankBalance en " + f.getName(), null);
         }
 
         LandCurrency lc = new LandCurrency(landId, name);
@@ -67,22 +105,31 @@ public class CurrencyStorage {
             int c = cfg.getInt("issuedCount", 0);
             lc.setIssuedCount(c);
         }
+        lc.setValuationEpoch(cfg.getLong("valuationEpoch", 0L));
 
         return lc;
     }
 
+    @Override
+    public List<String> listIds() {
+        List<String> out = new ArrayList<>();
+        String[] names = dataDir.list((d, name) -> name.endsWith(".yml"));
+        if (names == null) return out;
+        for (String name : names) out.add(name.substring(0, name.length() - 4));
+        return out;
+    }
+
+    @Override
     public List<LandCurrency> loadAll() {
         List<LandCurrency> out = new ArrayList<>();
         File[] files = dataDir.listFiles((d, name) -> name.endsWith(".yml"));
         if (files == null) return out;
         for (File f : files) {
-            try {
-                String base = f.getName().replaceFirst("\\.yml$", "");
-                // base may be UUID or ULID or any string id; pass as-is
-                LandCurrency lc = loadLandCurrency(base);
-                if (lc != null) out.add(lc);
-            } catch (Exception ignored) {
-            }
+            String base = f.getName().replaceFirst("\\.yml$", "");
+            // base may be UUID or ULID or any string id; pass as-is. Un archivo ilegible
+            // propaga CurrencyStorageException (p. ej. aborta una migración)
+            LandCurrency lc = load(base);
+            if (lc != null) out.add(lc);
         }
         return out;
     }
@@ -0,0 +1,12 @@
+package com.helixteam.economyplugin.currency;
+
+/**
+ * El almacenamiento de monedas no respondió (error de base de datos, pool agotado...).
+ * Distinto de "no existe": quien la recibe no debe crear una moneda vacía en su lugar.
+ */
+public class CurrencyStorageException extends RuntimeException {
+
+    public CurrencyStorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -28,6 +28,8 @@ public class CurrencyTabCompleter implements TabCompleter {
         subs.add("rename");
         subs.add("sync");
         subs.add("forceredeem");
+        subs.add("top");
+        subs.add("stats");
         subs.add("reload");
         subs.add("help");
 
@@ -59,6 +61,12 @@ public class CurrencyTabCompleter implements TabCompleter {
             if (first.equals("rename")) {
                 return Collections.singletonList("<nuevo_nombre>");
             }
+            if (first.equals("redeem") || first.equals("forceredeem")) {
+                String part = args[1].toLowerCase();
+                List<String> out = new ArrayList<>();
+                for (String s : new String[]{"stack", "all"}) if (s.startsWith(part)) out.add(s);
+                return out;
+            }
         }
 
         return Collections.emptyList();
@@ -0,0 +1,109 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistencia diferida (write-behind) de monedas.
+ *
+ * save() solo toma una copia inmutable de la LandCurrency y la deja como pendiente: si
+ * la misma land cambia varias veces antes del siguiente volcado (emisión, canje con
+ * revert, renombrado...) solo se escribe la última copia. Un hilo async vuelca las
+ * pendientes por lotes cada `currency.storage.flush_interval_seconds`.
+ * En onDisable y antes de un reload se hace un volcado final síncrono.
+ */
+public class CurrencyWriteBehind {
+
+    private final EconomyPlugin plugin;
+    private final CurrencyRepository repository;
+
+    // landId -> última copia pendiente de escribir
+    private final ConcurrentHashMap<String, LandCurrency.Snapshot> dirty = new ConcurrentHashMap<>();
+    // serializa los volcados (timer async y volcado final) para no escribir una copia vieja sobre una nueva
+    private final Object flushLock = new Object();
+    private org.bukkit.scheduler.BukkitTask task = null;
+
+    public CurrencyWriteBehind(EconomyPlugin plugin, CurrencyRepository repository) {
+        this.plugin = plugin;
+        this.repository = repository;
+    }
+
+    public void start() {
+        stop();
+        int secs = plugin.getConfig().getInt("currency.storage.flush_interval_seconds", 5);
+        if (secs <= 0) secs = 5;
+        long ticks = secs * 20L;
+        task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::flush, ticks, ticks);
+    }
+
+    public void stop() {
+        if (task != null) {
+            try { task.cancel(); } catch (Throwable ignored) {}
+            task = null;
+        }
+    }
+
+    /**
+     * Marca la moneda como pendiente de escribir. Seguro desde cualquier hilo: si dos
+     * hilos guardan la misma land, gana la copia con la época más alta aunque llegue antes.
+     */
+    public void markDirty(LandCurrency.Snapshot snapshot) {
+        dirty.merge(snapshot.landId(), snapshot, CurrencyWriteBehind::newer);
+    }
+
+    private static LandCurrency.Snapshot newer(LandCurrency.Snapshot a, LandCurrency.Snapshot b) {
+        return b.valuationEpoch() >= a.valuationEpoch() ? b : a;
+    }
+
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Escribe todas las copias pendientes. Devuelve cuántas se escribieron.
+     */
+    public int flush() {
+        return flushBatch()[0];
+    }
+
+    /**
+     * Como flush(), pero indica si todas las copias tomadas se escribieron sin error.
+     */
+    public boolean flushAll() {
+        int[] r = flushBatch();
+        return r[0] == r[1];
+    }
+
+    // {escritas, tomadas}
+    private int[] flushBatch() {
+        synchronized (flushLock) {
+            if (dirty.isEmpty()) return new int[]{0, 0};
+            List<LandCurrency.Snapshot> batch = new ArrayList<>(dirty.size());
+            for (String landId : new ArrayList<>(dirty.keySet())) {
+                // una copia más nueva que llegue tras remove() queda para el siguiente volcado
+                LandCurrency.Snapshot s = dirty.remove(landId);
+                if (s != null) batch.add(s);
+            }
+            List<LandCurrency.Snapshot> failed = repository.saveAll(batch);
+            // reintentar en el siguiente volcado salvo que ya haya una copia más nueva
+            for (LandCurrency.Snapshot s : failed) dirty.merge(s.landId(), s, (cur, old) -> newer(old, cur));
+            int written = batch.size() - failed.size();
+            plugin.getDebugLogger().fine("Currency write-behind flushed " + written + "/" + batch.size() + " lands.");
+            return new int[]{written, batch.size()};
+        }
+    }
+
+    /**
+     * Detiene el volcado periódico y escribe lo pendiente en el hilo actual.
+     * Devuelve false si alguna copia no pudo escribirse.
+     */
+    public boolean shutdown() {
+        stop();
+        int[] r = flushBatch();
+        if (r[0] > 0) plugin.getLogger().info("Saved " + r[0] + " pending land currencies.");
+        return r[0] == r[1];
+    }
+}
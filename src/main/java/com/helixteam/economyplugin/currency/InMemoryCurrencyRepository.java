@@ -0,0 +1,38 @@
+package com.helixteam.economyplugin.currency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repositorio sin persistencia: las monedas viven solo mientras el servidor está
+ * encendido. Pensado para servidores de pruebas (`currency.storage.backend: memory`).
+ */
+public class InMemoryCurrencyRepository implements CurrencyRepository {
+
+    private final ConcurrentHashMap<String, LandCurrency.Snapshot> rows = new ConcurrentHashMap<>();
+
+    @Override
+    public LandCurrency load(String landId) {
+        LandCurrency.Snapshot s = rows.get(landId);
+        return s == null ? null : LandCurrency.fromSnapshot(s);
+    }
+
+    @Override
+    public List<LandCurrency> loadAll() {
+        List<LandCurrency> out = new ArrayList<>(rows.size());
+        for (LandCurrency.Snapshot s : rows.values()) out.add(LandCurrency.fromSnapshot(s));
+        return out;
+    }
+
+    @Override
+    public List<String> listIds() {
+        return new ArrayList<>(rows.keySet());
+    }
+
+    @Override
+    public boolean save(LandCurrency.Snapshot snapshot) {
+        rows.put(snapshot.landId(), snapshot);
+        return true;
+    }
+}
@@ -0,0 +1,126 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import com.helixteam.economyplugin.lands.EventLandsBankFeed;
+import com.helixteam.economyplugin.lands.LandsBankFeed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sincronización push desde Lands: recibe del LandsBankFeed los ids de lands cuyo banco
+ * cambió, los agrupa (varios avisos de la misma land cuentan como uno) y una vez por tick
+ * sincroniza el lote en el hilo principal. El lote se procesa en el tick siguiente al
+ * aviso, cuando Lands ya aplicó el movimiento.
+ *
+ * Mientras el feed está activo, LandSyncScheduler usa `currency.sync.push.poll_interval_seconds`
+ * como red de seguridad en lugar de `interval_seconds`.
+ */
+public class LandBankChangeQueue {
+
+    private final EconomyPlugin plugin;
+    // sincroniza una land y aplaza su próximo sondeo
+    private final Function<String, CurrencyManager.SyncResult> sync;
+    private final Consumer<String> synced;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+
+    private LandsBankFeed feed = null;
+    private org.bukkit.scheduler.BukkitTask task = null;
+    private volatile boolean active = false;
+
+    public LandBankChangeQueue(EconomyPlugin plugin, CurrencyManager manager) {
+        this(plugin, manager::syncFromLandsDetailed, id -> manager.getSyncScheduler().markSynced(id));
+    }
+
+    /**
+     * Sin CurrencyManager: los tests pasan directamente la sincronización.
+     */
+    LandBankChangeQueue(EconomyPlugin plugin, Function<String, CurrencyManager.SyncResult> sync, Consumer<String> synced) {
+        this.plugin = plugin;
+        this.sync = sync;
+        this.synced = synced;
+    }
+
+    /**
+     * Arranca el feed configurado. Devuelve true si quedó activo.
+     */
+    public boolean start() {
+        stop();
+        var cfg = plugin.getConfig();
+        if (!cfg.getBoolean("currency.sync.enabled", false) || !cfg.getBoolean("currency.sync.push.enabled", true)) return false;
+        if ("none".equalsIgnoreCase(cfg.getString("currency.sync.push.feed", "lands"))) return false;
+        LandsBankFeed f = new EventLandsBankFeed(plugin);
+        if (!attach(f)) {
+            plugin.getDebugLogger().fine("Push sync: feed " + f.describe() + " no disponible; solo polling.");
+            return false;
+        }
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+        active = true;
+        plugin.getLogger().info("Sincronización push con Lands activa (" + feed.describe() + ").");
+        return true;
+    }
+
+    public void stop() {
+        active = false;
+        if (feed != null) {
+            try { feed.stop(); } catch (Throwable ignored) {}
+            feed = null;
+        }
+        if (task != null) {
+            try { task.cancel(); } catch (Throwable ignored) {}
+            task = null;
+        }
+        pending.clear();
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getApplied() {
+        return applied.get();
+    }
+
+    /**
+     * Arranca el feed entregando sus avisos a esta cola. Devuelve false si no está disponible.
+     */
+    boolean attach(LandsBankFeed f) {
+        if (!f.start(this::enqueue)) return false;
+        feed = f;
+        return true;
+    }
+
+    private void enqueue(String landId) {
+        received.incrementAndGet();
+        pending.add(landId);
+    }
+
+    /**
+     * Sincroniza una vez cada land avisada desde el último drain. Se llama cada tick.
+     */
+    void drain() {
+        if (pending.isEmpty()) return;
+        List<String> batch = new ArrayList<>(pending);
+        pending.removeAll(batch);
+        for (String landId : batch) {
+            try {
+                if (sync.apply(landId) == CurrencyManager.SyncResult.FAILED) continue;
+                applied.incrementAndGet();
+                synced.accept(landId);
+            } catch (Throwable t) {
+                plugin.getLogger().warning("Error en push sync(" + landId + "): " + t.getMessage());
+            }
+        }
+    }
+}
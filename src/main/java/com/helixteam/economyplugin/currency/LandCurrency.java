@@ -1,60 +1,155 @@
 package com.helixteam.economyplugin.currency;
 
- 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * Representa la moneda asociada a una Land.
- * Persistible via YAML por Land.
+ * Persistible vía CurrencyRepository.
+ *
+ * El estado (nombre, banco, billetes emitidos, versión) es un State inmutable guardado
+ * en una AtomicReference y se cambia por compare-and-set: cualquier hilo (sync async,
+ * métricas, consultas) lee siempre un estado completo y coherente sin bloquear.
+ * La versión es la época de valoración: aumenta con cada cambio de banco, circulación o
+ * nombre, y los billetes la guardan para detectar si están desactualizados.
+ * Las operaciones de varios pasos (canje + pago + revert) siguen usando runLocked.
  */
 public class LandCurrency {
 
+    /**
+     * Estado inmutable de la moneda.
+     */
+    public record State(String name, java.math.BigDecimal bankBalance, int issuedCount, long version) {
+
+        public State withName(String n) {
+            return new State(n, bankBalance, issuedCount, version);
+        }
+
+        public State withBankBalance(java.math.BigDecimal b) {
+            return new State(name, b == null ? java.math.BigDecimal.ZERO : b, issuedCount, version);
+        }
+
+        public State withIssuedCount(int c) {
+            return new State(name, bankBalance, Math.max(0, c), version);
+        }
+
+        boolean sameContent(State o) {
+            return java.util.Objects.equals(name, o.name) && bankBalance.compareTo(o.bankBalance) == 0
+                    && issuedCount == o.issuedCount;
+        }
+    }
+
     private final String landId;
-    private String name;
-    private java.math.BigDecimal bankBalance;
-    private int issuedCount = 0;
+    private final AtomicReference<State> state;
 
     public LandCurrency(String landId, String name) {
         this.landId = landId == null ? "" : landId;
-        this.name = name;
-        this.bankBalance = java.math.BigDecimal.ZERO;
+        this.state = new AtomicReference<>(new State(name, java.math.BigDecimal.ZERO, 0, 0L));
     }
 
     public String getLandId() {
         return landId;
     }
 
+    public State state() {
+        return state.get();
+    }
+
+    /**
+     * Aplica una transformación de forma atómica (reintenta si otro hilo cambió el estado
+     * entretanto). Si el contenido cambia, la versión aumenta en uno. Devuelve el estado
+     * resultante.
+     */
+    public State update(UnaryOperator<State> fn) {
+        while (true) {
+            State cur = state.get();
+            State next = fn.apply(cur);
+            if (next == null || next.sameContent(cur)) return cur;
+            next = new State(next.name(), next.bankBalance(), next.issuedCount(), cur.version() + 1);
+            if (state.compareAndSet(cur, next)) return next;
+        }
+    }
+
     public String getName() {
-        return name;
+        return state.get().name();
     }
 
     public void setName(String name) {
-        this.name = name;
+        update(s -> s.withName(name));
     }
 
     public java.math.BigDecimal getBankBalance() {
-        return bankBalance;
+        return state.get().bankBalance();
     }
 
     public void setBankBalance(java.math.BigDecimal bankBalance) {
-        this.bankBalance = bankBalance == null ? java.math.BigDecimal.ZERO : bankBalance;
+        update(s -> s.withBankBalance(bankBalance));
     }
 
     public int getIssuedCount() {
-        return issuedCount;
+        return state.get().issuedCount();
     }
 
     public void addIssued(int n) {
         if (n <= 0) return;
-        issuedCount += n;
+        update(s -> s.withIssuedCount(s.issuedCount() + n));
     }
 
     public boolean removeOneIssued() {
-        if (issuedCount <= 0) return false;
-        issuedCount -= 1;
-        return true;
+        State before = state.get();
+        while (before.issuedCount() > 0) {
+            State next = new State(before.name(), before.bankBalance(), before.issuedCount() - 1, before.version() + 1);
+            if (state.compareAndSet(before, next)) return true;
+            before = state.get();
+        }
+        return false;
     }
 
     public void setIssuedCount(int c) {
-        this.issuedCount = Math.max(0, c);
+        update(s -> s.withIssuedCount(c));
+    }
+
+    /**
+     * Copia inmutable del estado actual, para persistirla fuera del hilo principal.
+     */
+    public Snapshot snapshot() {
+        State s = state.get();
+        return new Snapshot(landId, s.name(), s.bankBalance(), s.issuedCount(), s.version());
+    }
+
+    /**
+     * Crea una moneda con el estado exacto de una copia (repositorios).
+     */
+    public static LandCurrency fromSnapshot(Snapshot s) {
+        LandCurrency lc = new LandCurrency(s.landId(), s.name());
+        lc.restore(s);
+        return lc;
+    }
+
+    /**
+     * Restaura el estado de una copia tal cual, época incluida (replay del journal).
+     */
+    void restore(Snapshot s) {
+        state.set(new State(s.name(), s.bankBalance() == null ? java.math.BigDecimal.ZERO : s.bankBalance(),
+                Math.max(0, s.issuedCount()), s.valuationEpoch()));
+    }
+
+    public record Snapshot(String landId, String name, java.math.BigDecimal bankBalance, int issuedCount, long valuationEpoch) {
+    }
+
+    public long getValuationEpoch() {
+        return state.get().version();
+    }
+
+    /**
+     * Restaura la época persistida. Solo debe usarse al cargar desde disco: la época
+     * nunca retrocede para no confundir billetes estampados antes de un reinicio.
+     */
+    public void setValuationEpoch(long epoch) {
+        while (true) {
+            State cur = state.get();
+            if (cur.version() >= epoch) return;
+            if (state.compareAndSet(cur, new State(cur.name(), cur.bankBalance(), cur.issuedCount(), epoch))) return;
+        }
     }
 }
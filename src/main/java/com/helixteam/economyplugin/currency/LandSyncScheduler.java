@@ -0,0 +1,186 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sincronización periódica desde Lands repartida a lo largo del intervalo.
+ *
+ * Cada land tiene su propio vencimiento: al descubrirla se coloca en un punto aleatorio
+ * del intervalo (así las lands quedan repartidas en lugar de sincronizarse todas a la
+ * vez) y tras cada sync se vuelve a programar a `interval_seconds` ± `jitter` para que
+ * no se re-agrupen. Una vez por segundo se toman las lands vencidas y se sincronizan en
+ * un pool de `currency.sync.parallelism` hilos. Las lands se recorren con un cursor sobre
+ * un array de ids que solo se reconstruye cuando aparecen o desaparecen lands.
+ *
+ * Si el banco leído coincide con el local no se guarda ni se refrescan billetes.
+ * Los contadores de lands sin cambios, con cambios y fallidas son acumulados.
+ *
+ * Con la sincronización push activa (LandBankChangeQueue) el polling queda como red de
+ * seguridad: el intervalo pasa a `currency.sync.push.poll_interval_seconds` y las lands
+ * sincronizadas por evento se reprograman como si acabaran de sondearse.
+ */
+public class LandSyncScheduler {
+
+    private final EconomyPlugin plugin;
+    private final CurrencyManager manager;
+
+    // landId -> instante (ms) del siguiente sync
+    private final Map<String, Long> due = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private org.bukkit.scheduler.BukkitTask task = null;
+    private ExecutorService workers = null;
+    private long intervalMs;
+    private long jitterMs;
+    private int parallelism;
+    private long nextSummary;
+    private long[] lastSummary = new long[3];
+    // ids recorridos por dispatch() y versión de CurrencyManager con la que se tomaron
+    private String[] ids = new String[0];
+    private long idsVersion = -1L;
+    private int cursor = 0;
+
+    public LandSyncScheduler(EconomyPlugin plugin, CurrencyManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+    }
+
+    public void start() {
+        stop();
+        boolean enabled = plugin.getConfig().getBoolean("currency.sync.enabled", false);
+        int secs = plugin.getConfig().getInt("currency.sync.interval_seconds", 300);
+        if (!enabled || secs <= 0) return;
+        if (manager.getBankChangeQueue().isActive()) {
+            secs = Math.max(secs, plugin.getConfig().getInt("currency.sync.push.poll_interval_seconds", 1800));
+        }
+        intervalMs = secs * 1000L;
+        double jitter = plugin.getConfig().getDouble("currency.sync.jitter", 0.1);
+        jitterMs = (long) (intervalMs * Math.max(0.0, Math.min(0.5, jitter)));
+        parallelism = Math.max(1, plugin.getConfig().getInt("currency.sync.parallelism", 2));
+        workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "Helieco-LandSync");
+            t.setDaemon(true);
+            return t;
+        });
+        due.clear();
+        idsVersion = -1L;
+        cursor = 0;
+        nextSummary = System.currentTimeMillis() + intervalMs;
+        task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::dispatch, 20L, 20L);
+        plugin.getDebugLogger().fine("Periodic sync scheduled every " + secs + " seconds (parallelism=" + parallelism + ").");
+    }
+
+    public void stop() {
+        if (task != null) {
+            try { task.cancel(); } catch (Throwable ignored) {}
+            task = null;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * La land acaba de sincronizarse por otra vía: aplazar su próximo sondeo.
+     */
+    public void markSynced(String landId) {
+        if (task == null) return;
+        due.computeIfPresent(landId, (k, v) -> System.currentTimeMillis() + intervalMs + nextJitter());
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getChanged() {
+        return changed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void dispatch() {
+        try {
+            long now = System.currentTimeMillis();
+            long version = manager.getLandIdsVersion();
+            if (version != idsVersion) {
+                ids = manager.landIdArray();
+                idsVersion = version;
+                // lands nuevas: punto aleatorio del intervalo; lands desaparecidas: fuera
+                for (String id : ids) {
+                    due.computeIfAbsent(id, k -> now + ThreadLocalRandom.current().nextLong(intervalMs));
+                }
+                if (due.size() > ids.length) due.keySet().retainAll(Set.of(ids));
+                if (cursor >= ids.length) cursor = 0;
+            }
+
+            ExecutorService ex = workers;
+            if (ex == null) return;
+            // sin cola ilimitada: como mucho unas pocas tandas por hilo pendientes
+            int room = parallelism * 8 - inFlight.size();
+            String[] arr = ids;
+            // como mucho una vuelta completa; la siguiente llamada sigue donde se quedó
+            for (int n = 0; n < arr.length && room > 0; n++) {
+                String id = arr[cursor];
+                cursor = cursor + 1 == arr.length ? 0 : cursor + 1;
+                Long at = due.get(id);
+                if (at == null || at > now || !inFlight.add(id)) continue;
+                room--;
+                ex.execute(() -> syncOne(id));
+            }
+            if (now >= nextSummary) summarize(arr.length);
+        } catch (Throwable t) {
+            plugin.getLogger().warning("Error en periodic sync: " + t.getMessage());
+        }
+    }
+
+    private void syncOne(String landId) {
+        try {
+            switch (manager.syncFromLandsDetailed(landId)) {
+                case CHANGED: changed.incrementAndGet(); break;
+                case UNCHANGED: skipped.incrementAndGet(); break;
+                default: failed.incrementAndGet(); break;
+            }
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+        } finally {
+            long jitter = nextJitter();
+            due.computeIfPresent(landId, (k, v) -> System.currentTimeMillis() + intervalMs + jitter);
+            inFlight.remove(landId);
+        }
+    }
+
+    private long nextJitter() {
+        return jitterMs > 0 ? ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1) : 0L;
+    }
+
+    private void summarize(int total) {
+        long s = skipped.get();
+        long c = changed.get();
+        long f = failed.get();
+        long ds = s - lastSummary[0];
+        long dc = c - lastSummary[1];
+        long df = f - lastSummary[2];
+        lastSummary = new long[]{s, c, f};
+        nextSummary = System.currentTimeMillis() + intervalMs;
+        // Only log summary if there were any failures or if configured to log successes
+        boolean logSuccess = plugin.getConfig().getBoolean("currency.sync.log_success", false);
+        String line = "Periodic sync summary: lands=" + total + " changed=" + dc + " unchanged=" + ds + " failed=" + df;
+        if (df > 0 || logSuccess) plugin.getLogger().info(line);
+        else plugin.getDebugLogger().finer(line);
+    }
+}
@@ -0,0 +1,215 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import com.helixteam.economyplugin.lands.LandsGateway;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cambios de banco pendientes de enviar a Lands, como deltas netos por land.
+ *
+ * Cada canje añade su delta (negativo) a la land; los deltas de la misma land se suman
+ * y cada `currency.sync.outbox.window_ticks` se aplican con los métodos de
+ * ingreso/retirada de Lands (LandsGateway.applyBankDelta), así un depósito hecho en Lands
+ * entre medias no se pisa. Si la Land no expone esos métodos se cae a leer el banco y
+ * escribir banco + delta.
+ *
+ * Hasta que Lands confirma el delta sigue en data/lands-outbox.yml (se reescribe tras
+ * cada ventana con cambios) y se reintenta; al arrancar se cargan los pendientes.
+ *
+ * Mientras un delta está pendiente, syncFromLands compara con banco de Lands + pendiente
+ * (pendingDelta), y cada land se envía bajo su lock para que ambos pasos no se crucen.
+ */
+public class LandsOutbox {
+
+    private final EconomyPlugin plugin;
+    private final CurrencyManager manager;
+    private final File file;
+    private final ConcurrentHashMap<String, java.math.BigDecimal> pending = new ConcurrentHashMap<>();
+    private final Object fileLock = new Object();
+
+    private org.bukkit.scheduler.BukkitTask task = null;
+    private volatile boolean dirty = false;
+    private boolean loaded = false;
+    // en stop() (onDisable) no se puede programar nada: se escribe en el hilo actual
+    private volatile boolean stopping = false;
+
+    public LandsOutbox(EconomyPlugin plugin, CurrencyManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+        // fuera de data/currency: CurrencyStorage toma cada *.yml de esa carpeta por una land
+        this.file = new File(plugin.getDataFolder(), "data/lands-outbox.yml");
+        File legacy = new File(plugin.getDataFolder(), "data/currency/outbox.yml");
+        if (legacy.exists() && !file.exists()) {
+            try {
+                Files.move(legacy.toPath(), file.toPath());
+            } catch (Exception e) {
+                plugin.getLogger().warning("No se pudo mover el outbox antiguo de Lands: " + e.getMessage());
+            }
+        }
+    }
+
+    public void start() {
+        stop();
+        stopping = false;
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+        long window = Math.max(1, plugin.getConfig().getInt("currency.sync.outbox.window_ticks", 20));
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flush, window, window);
+    }
+
+    /**
+     * Intenta un último envío y deja lo no confirmado en disco.
+     */
+    public void stop() {
+        if (task == null) return;
+        try { task.cancel(); } catch (Throwable ignored) {}
+        task = null;
+        stopping = true;
+        try {
+            flush();
+        } finally {
+            persist();
+        }
+    }
+
+    /**
+     * Suma un movimiento al banco de la land en Lands (positivo = ingreso).
+     */
+    public void record(String landId, java.math.BigDecimal delta) {
+        if (delta == null || delta.signum() == 0 || plugin.getLands() == null) return;
+        pending.merge(landId, delta, (a, b) -> {
+            java.math.BigDecimal sum = a.add(b);
+            return sum.signum() == 0 ? null : sum;
+        });
+        dirty = true;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void flush() {
+        // lo recibido en la ventana queda en disco antes de intentarlo, por si Lands falla
+        // o el servidor cae
+        if (dirty) persistAsync();
+        if (pending.isEmpty()) return;
+        List<String> batch = new ArrayList<>(pending.keySet());
+        LandsGateway gw = plugin.getLandsGateway();
+        for (String landId : batch) {
+            try {
+                // bajo el lock de la land: un sync no puede leer Lands ya con el movimiento
+                // aplicado y sumarle además el pendiente aún sin confirmar
+                manager.runLocked(landId, () -> flushLand(gw, landId));
+            } catch (Throwable t) {
+                plugin.getLogger().warning("Error enviando banco a Lands (" + landId + "): " + t.getMessage());
+            }
+        }
+        if (dirty) persistAsync();
+    }
+
+    private void flushLand(LandsGateway gw, String landId) {
+        java.math.BigDecimal delta = pending.get(landId);
+        if (delta == null) return;
+        Object land = gw.findLand(landId);
+        if (land == null) return;
+        LandsGateway.DeltaResult res = gw.applyBankDelta(land, delta);
+        if (res == LandsGateway.DeltaResult.FAILED) {
+            // sin plan B: leer + escribir podría aplicar el movimiento dos veces
+            plugin.getDebugLogger().fine("Outbox: el movimiento de " + landId + " falló; se reintentará.");
+            return;
+        }
+        if (res == LandsGateway.DeltaResult.UNSUPPORTED) {
+            java.math.BigDecimal bank = gw.readBank(land);
+            res = bank != null && gw.writeBank(land, bank.add(delta)) ? LandsGateway.DeltaResult.APPLIED : LandsGateway.DeltaResult.UNSUPPORTED;
+        }
+        if (res == LandsGateway.DeltaResult.UNSUPPORTED) {
+            plugin.getDebugLogger().fine("Outbox: no se pudo escribir el banco de " + landId + "; se reintentará.");
+            return;
+        }
+        acknowledge(landId, delta);
+        if (res == LandsGateway.DeltaResult.REJECTED) {
+            // Lands no acepta el movimiento (p. ej. su banco ya es menor): traer su saldo
+            plugin.getLogger().warning("Lands rechazó un movimiento de " + delta.toPlainString() + " en " + landId + "; se resincroniza desde Lands.");
+            manager.syncFromLands(landId);
+            return;
+        }
+        plugin.getDebugLogger().fine("Outbox: aplicado " + delta.toPlainString() + " al banco de " + landId);
+        LandCurrency lc = manager.getIfLoaded(landId);
+        if (lc != null) manager.journalSyncOut(lc);
+    }
+
+    /**
+     * Movimiento aún no confirmado por Lands para la land (cero si no hay). El saldo local
+     * equivale a banco de Lands + este pendiente.
+     */
+    public java.math.BigDecimal pendingDelta(String landId) {
+        java.math.BigDecimal d = pending.get(landId);
+        return d == null ? java.math.BigDecimal.ZERO : d;
+    }
+
+    private void acknowledge(String landId, java.math.BigDecimal delta) {
+        pending.computeIfPresent(landId, (k, v) -> {
+            java.math.BigDecimal rest = v.subtract(delta);
+            return rest.signum() == 0 ? null : rest;
+        });
+        dirty = true;
+    }
+
+    private void persistAsync() {
+        if (stopping || !plugin.isEnabled()) persist();
+        else plugin.getServer().getScheduler().runTaskAsynchronously(plugin, this::persist);
+    }
+
+    private void persist() {
+        synchronized (fileLock) {
+            if (!dirty) return;
+            dirty = false;
+            YamlConfiguration cfg = new YamlConfiguration();
+            for (Map.Entry<String, java.math.BigDecimal> e : pending.entrySet()) {
+                cfg.set(e.getKey(), e.getValue().toPlainString());
+            }
+            try {
+                File dir = file.getParentFile();
+                if (!dir.exists()) dir.mkdirs();
+                Path tmp = new File(dir, "lands-outbox.yml.tmp").toPath();
+                Files.write(tmp, cfg.saveToString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (Exception e) {
+                dirty = true;
+                plugin.getLogger().severe("No se pudo guardar el outbox de Lands: " + e.getMessage());
+            }
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        YamlConfiguration cfg = YamlConfiguration.loadConfiguration(file);
+        int n = 0;
+        for (String landId : cfg.getKeys(false)) {
+            try {
+                record(landId, new java.math.BigDecimal(cfg.getString(landId, "0")));
+                n++;
+            } catch (NumberFormatException e) {
+                plugin.getLogger().warning("Outbox: delta inválido para " + landId + "; se ignora.");
+            }
+        }
+        if (n > 0) plugin.getLogger().info("Outbox de Lands: " + n + " movimientos pendientes de enviar.");
+    }
+}
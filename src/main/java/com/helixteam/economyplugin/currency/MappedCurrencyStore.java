@@ -0,0 +1,289 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motor de almacenamiento alternativo: todas las monedas en un único archivo mapeado en
+ * memoria (`data/currency.dat`) con registros de tamaño fijo.
+ *
+ * Cabecera (64 bytes): magic, versión, tamaño de registro, capacidad, slots usados.
+ * Registro (256 bytes, versión 2):
+ * <pre>
+ *   0   byte   usado (1)
+ *   1   byte   longitud del landId (UTF-8, máx. 64)
+ *   2   [64]   landId
+ *   66  byte   longitud del nombre (UTF-8, máx. 96)
+ *   67  [96]   nombre
+ *   163 byte   longitud del banco (máx. 48)
+ *   164 [48]   banco como BigDecimal.toPlainString(), sin redondeo
+ *   212 int    billetes emitidos
+ *   216 long   época de valoración
+ * </pre>
+ * Un nombre o un banco que no caben se rechazan (save devuelve false; los comandos
+ * comprueban antes getMaxNameBytes()), nunca se recortan ni redondean. Un archivo de la
+ * versión 1 (banco en diezmilésimas) se convierte al abrirlo y se conserva como
+ * `currency.dat.v1`.
+ *
+ * Al abrir se recorre el archivo una vez para construir el índice landId -> slot; cada
+ * guardado es una escritura en sitio. Si el archivo no existe se migran una sola vez los
+ * YAML de `data/currency/` (que se conservan como copia).
+ * Se elige con `currency.storage.backend: mapped`.
+ */
+public class MappedCurrencyStore implements CurrencyRepository {
+
+    private static final int MAGIC = 0x484C4331; // "HLC1"
+    private static final int VERSION = 2;
+    private static final int HEADER = 64;
+    private static final int RECORD = 256;
+    private static final int ID_MAX = 64;
+    private static final int NAME_MAX = 96;
+    private static final int BANK_MAX = 48;
+    private static final int OFF_ID_LEN = 1;
+    private static final int OFF_ID = 2;
+    private static final int OFF_NAME_LEN = 66;
+    private static final int OFF_NAME = 67;
+    private static final int OFF_BANK_LEN = 163;
+    private static final int OFF_BANK = 164;
+    private static final int OFF_ISSUED = 212;
+    private static final int OFF_EPOCH = 216;
+    private static final int INITIAL_CAPACITY = 1024;
+    // versión 1, solo para convertir
+    private static final int V1_RECORD = 192;
+    private static final int V1_OFF_BANK = 168;
+    private static final int V1_OFF_ISSUED = 176;
+    private static final int V1_OFF_EPOCH = 180;
+    private static final int V1_BANK_SCALE = 4;
+
+    private final EconomyPlugin plugin;
+    private final File file;
+    private final Map<String, Integer> index = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buf;
+    private int capacity;
+    private int used;
+
+    public MappedCurrencyStore(EconomyPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "data/currency.dat");
+    }
+
+    /**
+     * Abre (o crea y migra) el archivo y construye el índice.
+     */
+    public synchronized void open() throws IOException {
+        boolean fresh = !file.exists() || file.length() < HEADER;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (fresh) {
+            map(INITIAL_CAPACITY);
+            buf.putInt(0, MAGIC);
+            buf.putInt(4, VERSION);
+            buf.putInt(8, RECORD);
+            writeHeaderCounts();
+            migrateFromYaml();
+            return;
+        }
+        ByteBuffer head = ByteBuffer.allocate(HEADER);
+        channel.read(head, 0);
+        if (head.getInt(0) == MAGIC && head.getInt(4) == 1 && head.getInt(8) == V1_RECORD) {
+            upgradeFromV1(head);
+            return;
+        }
+        if (head.getInt(0) != MAGIC || head.getInt(4) != VERSION || head.getInt(8) != RECORD) {
+            throw new IOException("formato de " + file.getName() + " no reconocido");
+        }
+        map(head.getInt(12));
+        used = buf.getInt(16);
+        long start = System.nanoTime();
+        for (int slot = 0; slot < used; slot++) {
+            int base = offset(slot);
+            if (buf.get(base) != 1) continue;
+            index.put(readString(base + OFF_ID_LEN, base + OFF_ID), slot);
+        }
+        plugin.getDebugLogger().fine("Mapped currency index: " + index.size() + " lands in "
+                + (System.nanoTime() - start) / 1_000_000L + " ms");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            if (buf != null) buf.force();
+            channel.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Error cerrando " + file.getName() + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    @Override
+    public synchronized boolean save(LandCurrency.Snapshot s) {
+        try {
+            byte[] id = s.landId().getBytes(StandardCharsets.UTF_8);
+            if (id.length > ID_MAX) throw new IOException("landId demasiado largo");
+            byte[] name = (s.name() == null ? "" : s.name()).getBytes(StandardCharsets.UTF_8);
+            if (name.length > NAME_MAX) throw new IOException("nombre de más de " + NAME_MAX + " bytes");
+            byte[] bank = (s.bankBalance() == null ? java.math.BigDecimal.ZERO : s.bankBalance())
+                    .toPlainString().getBytes(StandardCharsets.US_ASCII);
+            if (bank.length > BANK_MAX) throw new IOException("banco de más de " + BANK_MAX + " dígitos");
+            Integer slot = index.get(s.landId());
+            if (slot == null) {
+                if (used == capacity) map(capacity * 2);
+                slot = used++;
+                index.put(s.landId(), slot);
+                writeHeaderCounts();
+            }
+            int base = offset(slot);
+            buf.put(base + OFF_ID_LEN, (byte) id.length);
+            buf.put(base + OFF_ID, id);
+            buf.put(base + OFF_NAME_LEN, (byte) name.length);
+            buf.put(base + OFF_NAME, name);
+            buf.put(base + OFF_BANK_LEN, (byte) bank.length);
+            buf.put(base + OFF_BANK, bank);
+            buf.putInt(base + OFF_ISSUED, s.issuedCount());
+            buf.putLong(base + OFF_EPOCH, s.valuationEpoch());
+            // el flag de uso se escribe al final: un slot a medias no entra en el índice
+            buf.put(base, (byte) 1);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("No se pudo guardar currency for land " + s.landId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Lleva a disco las páginas modificadas. CurrencyWriteBehind lo llama tras cada lote.
+     */
+    @Override
+    public synchronized void sync() {
+        if (buf != null) buf.force();
+    }
+
+    @Override
+    public synchronized LandCurrency load(String landId) {
+        Integer slot = index.get(landId);
+        return slot == null ? null : read(offset(slot));
+    }
+
+    @Override
+    public synchronized List<String> listIds() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    @Override
+    public synchronized List<LandCurrency> loadAll() {
+        List<LandCurrency> out = new ArrayList<>(index.size());
+        for (int slot : index.values()) out.add(read(offset(slot)));
+        return out;
+    }
+
+    private LandCurrency read(int base) {
+        String landId = readString(base + OFF_ID_LEN, base + OFF_ID);
+        String name = readString(base + OFF_NAME_LEN, base + OFF_NAME);
+        LandCurrency lc = new LandCurrency(landId, name);
+        lc.setBankBalance(new java.math.BigDecimal(readString(base + OFF_BANK_LEN, base + OFF_BANK)));
+        lc.setIssuedCount(buf.getInt(base + OFF_ISSUED));
+        lc.setValuationEpoch(buf.getLong(base + OFF_EPOCH));
+        return lc;
+    }
+
+    /**
+     * Máximo de bytes UTF-8 de un nombre de moneda.
+     */
+    @Override
+    public int getMaxNameBytes() {
+        return NAME_MAX;
+    }
+
+    /**
+     * Convierte un archivo de la versión 1 (registros de 192 bytes, banco en diezmilésimas)
+     * a la actual; el original queda como currency.dat.v1.
+     */
+    private void upgradeFromV1(ByteBuffer head) throws IOException {
+        int oldUsed = head.getInt(16);
+        // lectura a memoria (no map): el archivo se renombra después
+        ByteBuffer old = ByteBuffer.allocate(HEADER + V1_RECORD * oldUsed);
+        while (old.hasRemaining() && channel.read(old, old.position()) > 0) {
+            // hasta leer todos los slots usados
+        }
+        List<LandCurrency.Snapshot> rows = new ArrayList<>();
+        for (int slot = 0; slot < oldUsed; slot++) {
+            int base = HEADER + slot * V1_RECORD;
+            if (old.get(base) != 1) continue;
+            String landId = readString(old, base + OFF_ID_LEN, base + OFF_ID);
+            String name = readString(old, base + OFF_NAME_LEN, base + OFF_NAME);
+            java.math.BigDecimal bank = java.math.BigDecimal.valueOf(old.getLong(base + V1_OFF_BANK), V1_BANK_SCALE).stripTrailingZeros();
+            rows.add(new LandCurrency.Snapshot(landId, name, bank, old.getInt(base + V1_OFF_ISSUED), old.getLong(base + V1_OFF_EPOCH)));
+        }
+        channel.close();
+        File backup = new File(file.getParentFile(), file.getName() + ".v1");
+        java.nio.file.Files.move(file.toPath(), backup.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buf = null;
+        used = 0;
+        index.clear();
+        map(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, rows.size())) * 2));
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putInt(8, RECORD);
+        writeHeaderCounts();
+        int ok = 0;
+        for (LandCurrency.Snapshot r : rows) {
+            if (save(r)) ok++;
+        }
+        buf.force();
+        plugin.getLogger().info("Convertidas " + ok + "/" + rows.size() + " monedas de " + file.getName()
+                + " al formato 2 (copia en " + backup.getName() + ").");
+    }
+
+    private void migrateFromYaml() {
+        List<LandCurrency> yaml = new CurrencyStorage(plugin).loadAll();
+        if (yaml.isEmpty()) return;
+        int migrated = 0;
+        for (LandCurrency lc : yaml) {
+            if (save(lc.snapshot())) migrated++;
+        }
+        buf.force();
+        plugin.getLogger().info("Migradas " + migrated + "/" + yaml.size() + " monedas de YAML a " + file.getName()
+                + " (los YAML se conservan como copia).");
+    }
+
+    private void map(int newCapacity) throws IOException {
+        if (buf != null) buf.force();
+        capacity = newCapacity;
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) RECORD * capacity);
+        buf.putInt(12, capacity);
+    }
+
+    private void writeHeaderCounts() {
+        buf.putInt(12, capacity);
+        buf.putInt(16, used);
+    }
+
+    private static int offset(int slot) {
+        return HEADER + slot * RECORD;
+    }
+
+    private String readString(int lenPos, int pos) {
+        return readString(buf, lenPos, pos);
+    }
+
+    private static String readString(ByteBuffer b, int lenPos, int pos) {
+        int len = b.get(lenPos) & 0xFF;
+        byte[] out = new byte[len];
+        b.get(pos, out);
+        return new String(out, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,142 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Billetes en custodia que hay que devolver a un jugador desconectado.
+ *
+ * Cuando un canje no se puede liquidar y el jugador ya no está, sus billetes no se tiran
+ * al mundo (el chunk puede no estar cargado): quedan aquí, en data/pending-returns.yml, y
+ * se le entregan al volver a entrar. El archivo se reescribe tras cada cambio (en segundo
+ * plano mientras el plugin está activo) y se lee al arrancar.
+ */
+public class PendingReturns implements Listener {
+
+    private final EconomyPlugin plugin;
+    private final File file;
+    private final ConcurrentHashMap<UUID, List<ItemStack>> pending = new ConcurrentHashMap<>();
+    private final Object fileLock = new Object();
+    private volatile boolean dirty = false;
+
+    public PendingReturns(EconomyPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "data/pending-returns.yml");
+        load();
+    }
+
+    /**
+     * Guarda los billetes para entregarlos cuando el jugador vuelva.
+     */
+    public void add(UUID player, List<ItemStack> items) {
+        if (items.isEmpty()) return;
+        pending.compute(player, (k, v) -> {
+            List<ItemStack> out = v == null ? new ArrayList<>() : new ArrayList<>(v);
+            for (ItemStack it : items) out.add(it.clone());
+            return out;
+        });
+        dirty = true;
+        persistSoon();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        Player p = event.getPlayer();
+        List<ItemStack> items = pending.remove(p.getUniqueId());
+        if (items == null) return;
+        int count = 0;
+        for (ItemStack it : items) {
+            count += it.getAmount();
+            for (ItemStack left : p.getInventory().addItem(it).values()) {
+                p.getWorld().dropItemNaturally(p.getLocation(), left);
+            }
+        }
+        p.sendMessage("Se te han devuelto " + count + " billetes de un canje que no se pudo completar.");
+        dirty = true;
+        persistSoon();
+    }
+
+    /**
+     * Escribe el archivo en el hilo actual (al apagar).
+     */
+    public void save() {
+        persist();
+    }
+
+    private void persistSoon() {
+        // durante onDisable no se pueden programar tareas
+        if (plugin.isEnabled()) plugin.getServer().getScheduler().runTaskAsynchronously(plugin, this::persist);
+        else persist();
+    }
+
+    private void persist() {
+        synchronized (fileLock) {
+            if (!dirty) return;
+            dirty = false;
+            YamlConfiguration cfg = new YamlConfiguration();
+            for (Map.Entry<UUID, List<ItemStack>> e : pending.entrySet()) {
+                cfg.set(e.getKey().toString(), e.getValue());
+            }
+            try {
+                File dir = file.getParentFile();
+                if (!dir.exists()) dir.mkdirs();
+                Path tmp = new File(dir, "pending-returns.yml.tmp").toPath();
+                Files.write(tmp, cfg.saveToString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (Exception e) {
+                dirty = true;
+                plugin.getLogger().severe("No se pudieron guardar las devoluciones pendientes: " + e.getMessage());
+            }
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        YamlConfiguration cfg = YamlConfiguration.loadConfiguration(file);
+        int n = 0;
+        for (String key : cfg.getKeys(false)) {
+            UUID player;
+            try {
+                player = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Devoluciones pendientes: jugador inválido " + key + "; se ignora.");
+                continue;
+            }
+            List<ItemStack> items = new ArrayList<>();
+            List<?> raw = cfg.getList(key);
+            if (raw != null) {
+                for (Object o : raw) if (o instanceof ItemStack) items.add((ItemStack) o);
+            }
+            if (items.isEmpty()) continue;
+            pending.put(player, items);
+            n++;
+        }
+        if (n > 0) plugin.getLogger().info("Devoluciones de billetes pendientes para " + n + " jugadores.");
+    }
+}
@@ -0,0 +1,180 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canjes agrupados por land y liquidados una vez por tick.
+ *
+ * El comando retira los billetes del inventario (quedan en custodia) y encola el canje;
+ * en el tick siguiente se liquidan juntos todos los canjes de cada land: una lectura del
+ * banco desde Lands, un único valor por billete para todo el lote (el del estado previo,
+ * así el orden de llegada no cambia lo que cobra cada uno), un cambio de estado, un
+ * movimiento neto hacia Lands (LandsOutbox) y un refresco de billetes. Cada jugador
+ * recibe su propio pago; si su depósito falla se le devuelven los billetes y su parte
+ * vuelve al banco. Si el jugador ya no está conectado, los billetes pasan a
+ * PendingReturns y se le entregan al volver.
+ *
+ * Solo se usa desde el hilo principal.
+ */
+public class RedemptionQueue {
+
+    /**
+     * Canje pendiente: billetes en custodia de un jugador para una land.
+     */
+    public record Redemption(Player player, String landId, List<ItemStack> escrow, int count, boolean force) {}
+
+    private final EconomyPlugin plugin;
+    private final CurrencyManager manager;
+    private final Map<String, List<Redemption>> pending = new LinkedHashMap<>();
+    private boolean scheduled = false;
+
+    public RedemptionQueue(EconomyPlugin plugin, CurrencyManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+    }
+
+    public void enqueue(Redemption r) {
+        pending.computeIfAbsent(r.landId(), k -> new ArrayList<>()).add(r);
+        if (scheduled) return;
+        scheduled = true;
+        plugin.getServer().getScheduler().runTask(plugin, this::settleAll);
+    }
+
+    public int getPendingCount() {
+        int n = 0;
+        for (List<Redemption> l : pending.values()) n += l.size();
+        return n;
+    }
+
+    /**
+     * Liquida todo lo pendiente (cada tick y al apagar).
+     */
+    public void settleAll() {
+        scheduled = false;
+        if (pending.isEmpty()) return;
+        List<Map.Entry<String, List<Redemption>>> lands = new ArrayList<>(pending.entrySet());
+        pending.clear();
+        for (Map.Entry<String, List<Redemption>> e : lands) {
+            try {
+                settle(e.getKey(), e.getValue());
+            } catch (Throwable t) {
+                plugin.getLogger().severe("Error liquidando canjes de " + e.getKey() + ": " + t.getMessage());
+                for (Redemption r : e.getValue()) refund(r, "Error al canjear. Billetes devueltos.");
+            }
+        }
+    }
+
+    private void settle(String landId, List<Redemption> batch) {
+        // Una lectura del banco desde Lands por lote
+        manager.syncFromLands(landId);
+
+        manager.runLocked(landId, () -> {
+            var lc = manager.getOrCreate(landId);
+            // una sola lectura del estado: banco y circulación coherentes entre sí
+            var before = lc.state();
+            int issued = before.issuedCount();
+            java.math.BigDecimal value = java.math.BigDecimal.ZERO;
+            if (issued > 0) {
+                value = before.bankBalance().divide(java.math.BigDecimal.valueOf(issued), 2, java.math.RoundingMode.DOWN);
+            }
+
+            // Admitir en orden de llegada mientras haya billetes registrados
+            List<Redemption> admitted = new ArrayList<>();
+            int count = 0;
+            for (Redemption r : batch) {
+                if (issued <= 0) {
+                    refund(r, "Error: no hay billetes registrados para esta Land.");
+                } else if (count + r.count() > issued) {
+                    refund(r, "Error: hay más billetes que los registrados para esta Land (" + issued + ").");
+                } else {
+                    admitted.add(r);
+                    count += r.count();
+                }
+            }
+            if (admitted.isEmpty()) return;
+
+            // Restar del banco y de la circulación todo el lote en un único cambio de estado
+            final int n = count;
+            final java.math.BigDecimal total = value.multiply(java.math.BigDecimal.valueOf(n));
+            lc.update(st -> st.withBankBalance(st.bankBalance().subtract(total)).withIssuedCount(st.issuedCount() - n));
+            manager.save(lc, CurrencyJournal.Op.REDEEM);
+
+            // Pagar a cada jugador; los que fallan recuperan sus billetes
+            int failedCount = 0;
+            java.math.BigDecimal failedAmount = java.math.BigDecimal.ZERO;
+            List<Redemption> paid = new ArrayList<>();
+            for (Redemption r : admitted) {
+                java.math.BigDecimal amount = value.multiply(java.math.BigDecimal.valueOf(r.count()));
+                String error = deposit(r, amount);
+                if (error != null) {
+                    failedCount += r.count();
+                    failedAmount = failedAmount.add(amount);
+                    refund(r, error);
+                    continue;
+                }
+                paid.add(r);
+                String prefix = r.force() ? "(FORZADO) " : "";
+                if (r.count() == 1) r.player().sendMessage(prefix + "Canjeado billete por " + value);
+                else r.player().sendMessage(prefix + "Canjeados " + r.count() + " billetes por " + amount + " (" + value + " cada uno)");
+            }
+            if (failedCount > 0) {
+                // Revertir la parte de los pagos fallidos
+                final int fc = failedCount;
+                final java.math.BigDecimal fa = failedAmount;
+                lc.update(st -> st.withBankBalance(st.bankBalance().add(fa)).withIssuedCount(st.issuedCount() + fc));
+                manager.save(lc, CurrencyJournal.Op.REVERT);
+            }
+            if (paid.isEmpty()) return;
+
+            // Después de canjes exitosos, un refresco y un movimiento hacia Lands por lote
+            manager.requestRefresh(landId);
+            // El canje cuenta como "tocar" el billete: re-estampar lo que quede en la mano
+            for (Redemption r : paid) {
+                if (!r.player().isOnline()) continue;
+                var inv = r.player().getInventory();
+                var rest = inv.getItemInMainHand();
+                if (manager.restampBill(rest)) inv.setItemInMainHand(rest);
+            }
+            // el neto del lote viaja a Lands como retirada, no como saldo absoluto
+            manager.pushBankDelta(landId, total.subtract(failedAmount).negate());
+            plugin.getDebugLogger().fine("Canjes liquidados para " + landId + ": " + paid.size() + " jugadores, "
+                    + (n - failedCount) + " billetes");
+        });
+    }
+
+    // Devuelve null si el pago fue bien, o el mensaje de error para el jugador.
+    private String deposit(Redemption r, java.math.BigDecimal amount) {
+        try {
+            EconomyResponse resp = plugin.getEconomy().depositPlayer(r.player(), amount.doubleValue());
+            if (resp == null || !resp.transactionSuccess()) return "Error al pagar. Operación revertida.";
+            return null;
+        } catch (Throwable ex) {
+            plugin.getLogger().severe("Error pagando billete" + (r.force() ? " (forceredeem)" : "") + ": " + ex.getMessage());
+            return "Error al pagar (exception). Operación revertida.";
+        }
+    }
+
+    // Devuelve los billetes en custodia: al inventario (al suelo junto al jugador si no
+    // caben) o, si se desconectó, a las devoluciones pendientes.
+    private void refund(Redemption r, String message) {
+        Player p = plugin.getServer().getPlayer(r.player().getUniqueId());
+        if (p == null || !p.isOnline()) {
+            manager.getPendingReturns().add(r.player().getUniqueId(), r.escrow());
+            return;
+        }
+        for (ItemStack it : r.escrow()) {
+            for (ItemStack left : p.getInventory().addItem(it).values()) {
+                p.getWorld().dropItemNaturally(p.getLocation(), left);
+            }
+        }
+        p.sendMessage(message);
+    }
+}
@@ -0,0 +1,219 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repositorio sobre SQLite embebido (`data/currency.db`). El driver viene incluido en
+ * Paper, así que no añade dependencias al plugin.
+ *
+ * Tabla `land_currency` con el banco en punto fijo (diezmilésimas) para poder ordenarlo
+ * e indexarlo; índices sobre banco y sobre las lands con billetes en circulación.
+ * Los lotes se escriben en una sola transacción con un PreparedStatement por lotes.
+ * Un pequeño pool de conexiones (`currency.storage.sql.pool_size`) permite que el
+ * volcado y las consultas no se bloqueen entre sí (WAL).
+ */
+public class SqlCurrencyRepository implements CurrencyRepository {
+
+    private static final int BANK_SCALE = 4;
+    private static final String UPSERT = "INSERT INTO land_currency (land_id, name, bank_e4, issued, epoch) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT(land_id) DO UPDATE SET name = excluded.name, bank_e4 = excluded.bank_e4, "
+            + "issued = excluded.issued, epoch = excluded.epoch";
+    private static final String SELECT = "SELECT land_id, name, bank_e4, issued, epoch FROM land_currency";
+
+    private final EconomyPlugin plugin;
+    private final File file;
+    private ArrayBlockingQueue<Connection> pool;
+
+    public SqlCurrencyRepository(EconomyPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "data/currency.db");
+    }
+
+    public void open() throws SQLException {
+        File dir = file.getParentFile();
+        if (!dir.exists()) dir.mkdirs();
+        int size = Math.max(1, plugin.getConfig().getInt("currency.storage.sql.pool_size", 2));
+        pool = new ArrayBlockingQueue<>(size);
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        for (int i = 0; i < size; i++) {
+            Connection c = DriverManager.getConnection(url);
+            try (Statement st = c.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=NORMAL");
+                st.execute("PRAGMA busy_timeout=5000");
+                if (i == 0) {
+                    st.execute("CREATE TABLE IF NOT EXISTS land_currency ("
+                            + "land_id TEXT PRIMARY KEY, name TEXT NOT NULL, bank_e4 INTEGER NOT NULL, "
+                            + "issued INTEGER NOT NULL, epoch INTEGER NOT NULL)");
+                    st.execute("CREATE INDEX IF NOT EXISTS idx_land_currency_bank ON land_currency (bank_e4)");
+                    st.execute("CREATE INDEX IF NOT EXISTS idx_land_currency_issued ON land_currency (issued) WHERE issued > 0");
+                }
+            }
+            pool.add(c);
+        }
+        migrateFromYaml();
+    }
+
+    /**
+     * La primera vez (tabla vacía) copia las monedas de los YAML, que se conservan.
+     */
+    private void migrateFromYaml() throws SQLException {
+        Connection c = borrow();
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM land_currency")) {
+            if (rs.next() && rs.getLong(1) > 0) return;
+        } finally {
+            release(c);
+        }
+        List<LandCurrency.Snapshot> yaml = new ArrayList<>();
+        for (LandCurrency lc : new CurrencyStorage(plugin).loadAll()) yaml.add(lc.snapshot());
+        if (yaml.isEmpty()) return;
+        int failed = saveAll(yaml).size();
+        plugin.getLogger().info("Migradas " + (yaml.size() - failed) + "/" + yaml.size() + " monedas de YAML a " + file.getName()
+                + " (los YAML se conservan como copia).");
+    }
+
+    @Override
+    public void close() {
+        if (pool == null) return;
+        Connection c;
+        while ((c = pool.poll()) != null) {
+            try { c.close(); } catch (SQLException ignored) {}
+        }
+    }
+
+    @Override
+    public LandCurrency load(String landId) {
+        List<LandCurrency.Snapshot> rows = query(SELECT + " WHERE land_id = ?", landId);
+        return rows.isEmpty() ? null : LandCurrency.fromSnapshot(rows.get(0));
+    }
+
+    @Override
+    public List<LandCurrency> loadAll() {
+        List<LandCurrency> out = new ArrayList<>();
+        for (LandCurrency.Snapshot s : query(SELECT)) out.add(LandCurrency.fromSnapshot(s));
+        return out;
+    }
+
+    @Override
+    public List<String> listIds() {
+        List<String> out = new ArrayList<>();
+        Connection c = null;
+        try {
+            c = borrow();
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT land_id FROM land_currency")) {
+                while (rs.next()) out.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new CurrencyStorageException("Error consultando SQLite: " + e.getMessage(), e);
+        } finally {
+            release(c);
+        }
+        return out;
+    }
+
+    @Override
+    public boolean save(LandCurrency.Snapshot snapshot) {
+        List<LandCurrency.Snapshot> one = new ArrayList<>(1);
+        one.add(snapshot);
+        return saveAll(one).isEmpty();
+    }
+
+    @Override
+    public List<LandCurrency.Snapshot> saveAll(List<LandCurrency.Snapshot> batch) {
+        if (batch.isEmpty()) return batch;
+        Connection c = null;
+        try {
+            c = borrow();
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(UPSERT)) {
+                for (LandCurrency.Snapshot s : batch) {
+                    ps.setString(1, s.landId());
+                    ps.setString(2, s.name() == null ? "" : s.name());
+                    ps.setLong(3, toFixed(s.bankBalance()));
+                    ps.setInt(4, s.issuedCount());
+                    ps.setLong(5, s.valuationEpoch());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException | ArithmeticException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+            return new ArrayList<>();
+        } catch (SQLException | ArithmeticException e) {
+            plugin.getLogger().severe("No se pudo guardar lote de " + batch.size() + " monedas en SQLite: " + e.getMessage());
+            return batch;
+        } finally {
+            release(c);
+        }
+    }
+
+    @Override
+    public List<LandCurrency.Snapshot> topByBank(int limit) {
+        return query(SELECT + " ORDER BY bank_e4 DESC LIMIT " + Math.max(0, limit));
+    }
+
+    @Override
+    public List<LandCurrency.Snapshot> withOutstandingBills() {
+        return query(SELECT + " WHERE issued > 0");
+    }
+
+    private List<LandCurrency.Snapshot> query(String sql, String... params) {
+        List<LandCurrency.Snapshot> out = new ArrayList<>();
+        Connection c = null;
+        try {
+            c = borrow();
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) ps.setString(i + 1, params[i]);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        out.add(new LandCurrency.Snapshot(rs.getString(1), rs.getString(2),
+                                java.math.BigDecimal.valueOf(rs.getLong(3), BANK_SCALE).stripTrailingZeros(),
+                                rs.getInt(4), rs.getLong(5)));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            // un fallo (o el pool agotado) no es "no hay filas": load() lo tomaría por land inexistente
+            throw new CurrencyStorageException("Error consultando SQLite: " + e.getMessage(), e);
+        } finally {
+            release(c);
+        }
+        return out;
+    }
+
+    private Connection borrow() throws SQLException {
+        try {
+            Connection c = pool.poll(10L, TimeUnit.SECONDS);
+            if (c == null) throw new SQLException("no hay conexiones SQLite libres");
+            return c;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrumpido esperando conexión");
+        }
+    }
+
+    private void release(Connection c) {
+        if (c != null) pool.offer(c);
+    }
+
+    private static long toFixed(java.math.BigDecimal bank) {
+        java.math.BigDecimal b = bank == null ? java.math.BigDecimal.ZERO : bank;
+        return b.setScale(BANK_SCALE, java.math.RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,104 @@
+package com.helixteam.economyplugin.lands;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Consumer;
+
+/**
+ * Feed basado en los eventos de banco de Lands.
+ *
+ * Los eventos se registran por nombre de clase (varían entre versiones de Lands) a
+ * prioridad MONITOR, ignorando los cancelados. De cada evento solo se extrae la land
+ * (getLand()) y su id; el banco se lee después, cuando el consumidor procesa el lote,
+ * porque algunos eventos se publican antes de aplicar el movimiento.
+ */
+public class EventLandsBankFeed implements LandsBankFeed, Listener {
+
+    private static final String[] BANK_EVENTS = {
+            "me.angeschossen.lands.api.events.land.bank.LandBankDepositEvent",
+            "me.angeschossen.lands.api.events.land.bank.LandBankWithdrawEvent",
+            "me.angeschossen.lands.api.events.land.bank.LandBankBalanceChangedEvent",
+            "me.angeschossen.lands.api.events.land.bank.LandUpkeepEvent",
+            "me.angeschossen.lands.api.events.land.bank.LandBankTransactionEvent",
+            "me.angeschossen.lands.api.events.LandBankDepositEvent",
+            "me.angeschossen.lands.api.events.LandBankWithdrawEvent",
+            "me.angeschossen.lands.api.events.LandUpkeepEvent"
+    };
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private final EconomyPlugin plugin;
+    private volatile Consumer<String> sink = null;
+    private int registered = 0;
+
+    public EventLandsBankFeed(EconomyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean start(Consumer<String> sink) {
+        stop();
+        if (plugin.getLands() == null) return false;
+        this.sink = sink;
+        for (String cls : BANK_EVENTS) {
+            if (register(cls)) registered++;
+        }
+        plugin.getDebugLogger().fine("EventLandsBankFeed: " + registered + " eventos de banco registrados.");
+        if (registered == 0) this.sink = null;
+        return registered > 0;
+    }
+
+    @Override
+    public void stop() {
+        sink = null;
+        if (registered > 0) {
+            HandlerList.unregisterAll(this);
+            registered = 0;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "lands-events(" + registered + ")";
+    }
+
+    private boolean register(String className) {
+        Class<? extends Event> eventCls;
+        MethodHandle getLand;
+        try {
+            eventCls = Class.forName(className).asSubclass(Event.class);
+            getLand = MethodHandles.publicLookup().unreflect(eventCls.getMethod("getLand")).asType(GETTER);
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+            return false;
+        }
+        try {
+            plugin.getServer().getPluginManager().registerEvent(eventCls, this, EventPriority.MONITOR, (l, e) -> {
+                if (!eventCls.isInstance(e)) return;
+                Consumer<String> s = sink;
+                if (s == null) return;
+                String landId = landIdOf(getLand, e);
+                if (landId != null) s.accept(landId);
+            }, plugin, true);
+            return true;
+        } catch (Throwable t) {
+            plugin.getDebugLogger().fine("EventLandsBankFeed: no se pudo registrar " + className + ": " + t.getMessage());
+            return false;
+        }
+    }
+
+    private String landIdOf(MethodHandle getLand, Event e) {
+        try {
+            Object land = (Object) getLand.invokeExact((Object) e);
+            return plugin.getLandsGateway().landId(land);
+        } catch (Throwable t) {
+            plugin.getDebugLogger().fine("EventLandsBankFeed: no se pudo leer la land del evento: " + t.getMessage());
+            return null;
+        }
+    }
+}
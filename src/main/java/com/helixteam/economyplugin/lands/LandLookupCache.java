@@ -0,0 +1,191 @@
+package com.helixteam.economyplugin.lands;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.World;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de resoluciones de Lands para los comandos.
+ *
+ * Guarda qué land hay en cada chunk (world, x, z), qué id de land resuelve un jugador en
+ * una land concreta por ownership, y el id que usa el fallback de admin para cada land. El
+ * permiso de admin no se cachea: lo comprueba quien llama cada vez. Las entradas caducan a los
+ * `lands.cache.ttl_seconds` y se invalidan antes si Lands publica eventos de claim,
+ * unclaim, borrado o cambios de trust/owner (registrados por nombre de clase, para no
+ * depender de una versión concreta de la API). Un valor "" significa "no hay" y también
+ * se cachea.
+ *
+ * Además limita los volcados de diagnóstico (listas de métodos) a uno por clave cada
+ * cinco minutos.
+ */
+public class LandLookupCache implements Listener {
+
+    private static final long DUMP_INTERVAL_MS = 5 * 60_000L;
+    private static final int PURGE_THRESHOLD = 4096;
+
+    // claims/unclaims/creación/borrado/renombrado: cambian qué land hay en cada chunk y
+    // qué ids existen (también vacían la caché negativa de LandsGateway)
+    private static final String[] AREA_EVENTS = {
+            "me.angeschossen.lands.api.events.ChunkPostClaimEvent",
+            "me.angeschossen.lands.api.events.ChunkDeleteEvent",
+            "me.angeschossen.lands.api.events.LandDeleteEvent",
+            "me.angeschossen.lands.api.events.LandCreateEvent",
+            "me.angeschossen.lands.api.events.land.claiming.ChunkPostClaimEvent",
+            "me.angeschossen.lands.api.events.land.claiming.ChunkDeleteEvent",
+            "me.angeschossen.lands.api.events.land.LandDeleteEvent",
+            "me.angeschossen.lands.api.events.LandRenameEvent",
+            "me.angeschossen.lands.api.events.land.LandRenameEvent"
+    };
+    // trust/untrust/cambio de owner: cambian quién puede usar la land
+    private static final String[] MEMBER_EVENTS = {
+            "me.angeschossen.lands.api.events.LandTrustPlayerEvent",
+            "me.angeschossen.lands.api.events.LandUntrustPlayerEvent",
+            "me.angeschossen.lands.api.events.LandOwnerChangeEvent",
+            "me.angeschossen.lands.api.events.land.member.LandTrustPlayerEvent",
+            "me.angeschossen.lands.api.events.land.member.LandUntrustPlayerEvent",
+            "me.angeschossen.lands.api.events.land.LandOwnerChangeEvent"
+    };
+
+    private record ChunkKey(UUID world, int x, int z) {}
+
+    private record OwnerKey(UUID player, String landId) {}
+
+    private record Entry(String value, long expires) {}
+
+    private final EconomyPlugin plugin;
+    private final ConcurrentHashMap<ChunkKey, Entry> chunks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<OwnerKey, Entry> owners = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entry> fallbacks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lastDump = new ConcurrentHashMap<>();
+    private volatile long ttlMs;
+
+    public LandLookupCache(EconomyPlugin plugin) {
+        this.plugin = plugin;
+        loadConfig();
+    }
+
+    public void loadConfig() {
+        ttlMs = Math.max(0, plugin.getConfig().getInt("lands.cache.ttl_seconds", 60)) * 1000L;
+        clear();
+    }
+
+    /**
+     * Id de la land en el chunk: null si no está en caché, "" si no hay land.
+     */
+    public String landAt(World world, int chunkX, int chunkZ) {
+        if (world == null) return null;
+        return get(chunks, new ChunkKey(world.getUID(), chunkX, chunkZ));
+    }
+
+    public void putLandAt(World world, int chunkX, int chunkZ, String landId) {
+        if (world == null || ttlMs <= 0) return;
+        put(chunks, new ChunkKey(world.getUID(), chunkX, chunkZ), landId);
+    }
+
+    /**
+     * Id resuelto para el jugador en esa land: null si no está en caché, "" si no tiene acceso.
+     */
+    public String ownership(UUID player, String landId) {
+        return get(owners, new OwnerKey(player, landId));
+    }
+
+    public void putOwnership(UUID player, String landId, String resolved) {
+        if (ttlMs <= 0) return;
+        put(owners, new OwnerKey(player, landId), resolved);
+    }
+
+    /**
+     * Id de fallback de admin de la land: null si no está en caché, "" si no tiene uno válido.
+     */
+    public String fallbackId(String landId) {
+        return get(fallbacks, landId);
+    }
+
+    public void putFallbackId(String landId, String resolved) {
+        if (ttlMs <= 0) return;
+        put(fallbacks, landId, resolved);
+    }
+
+    public void invalidatePlayer(UUID player) {
+        owners.keySet().removeIf(k -> k.player().equals(player));
+    }
+
+    public void clear() {
+        chunks.clear();
+        owners.clear();
+        fallbacks.clear();
+    }
+
+    private void clearAreas() {
+        clear();
+        if (plugin.getLandsGateway() != null) plugin.getLandsGateway().clearNegativeCache();
+    }
+
+    public int size() {
+        return chunks.size() + owners.size() + fallbacks.size();
+    }
+
+    /**
+     * true como mucho una vez cada cinco minutos por clave: para volcados de diagnóstico.
+     */
+    public boolean shouldDump(String key) {
+        long now = System.currentTimeMillis();
+        Long prev = lastDump.get(key);
+        if (prev != null && now - prev < DUMP_INTERVAL_MS) return false;
+        return prev == null ? lastDump.putIfAbsent(key, now) == null : lastDump.replace(key, prev, now);
+    }
+
+    /**
+     * Registra los eventos de Lands que invalidan la caché. Devuelve cuántos se encontraron.
+     */
+    public int registerInvalidation() {
+        int n = 0;
+        for (String cls : AREA_EVENTS) {
+            if (register(cls, this::clearAreas)) n++;
+        }
+        for (String cls : MEMBER_EVENTS) {
+            if (register(cls, owners::clear)) n++;
+        }
+        plugin.getDebugLogger().fine("LandLookupCache: " + n + " eventos de Lands registrados para invalidación.");
+        return n;
+    }
+
+    private boolean register(String className, Runnable action) {
+        Class<? extends Event> eventCls;
+        try {
+            eventCls = Class.forName(className).asSubclass(Event.class);
+        } catch (ClassNotFoundException | ClassCastException | LinkageError e) {
+            return false;
+        }
+        try {
+            plugin.getServer().getPluginManager().registerEvent(eventCls, this, EventPriority.MONITOR, (l, e) -> {
+                if (eventCls.isInstance(e)) action.run();
+            }, plugin, true);
+            return true;
+        } catch (Throwable t) {
+            plugin.getDebugLogger().fine("LandLookupCache: no se pudo registrar " + className + ": " + t.getMessage());
+            return false;
+        }
+    }
+
+    private <K> String get(ConcurrentHashMap<K, Entry> map, K key) {
+        Entry e = map.get(key);
+        if (e == null) return null;
+        if (e.expires() <= System.currentTimeMillis()) {
+            map.remove(key, e);
+            return null;
+        }
+        return e.value();
+    }
+
+    private <K> void put(ConcurrentHashMap<K, Entry> map, K key, String value) {
+        long now = System.currentTimeMillis();
+        if (map.size() >= PURGE_THRESHOLD) map.values().removeIf(e -> e.expires() <= now);
+        map.put(key, new Entry(value == null ? "" : value, now + ttlMs));
+    }
+}
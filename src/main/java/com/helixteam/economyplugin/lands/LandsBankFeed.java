@@ -0,0 +1,24 @@
+package com.helixteam.economyplugin.lands;
+
+import java.util.function.Consumer;
+
+/**
+ * Fuente de avisos "el banco de esta land cambió dentro de Lands".
+ *
+ * La implementación real escucha los eventos de Lands (EventLandsBankFeed); los tests
+ * implementan la interfaz directamente para ejercitar LandBankChangeQueue sin Lands.
+ * Los avisos pueden llegar desde cualquier hilo y repetirse: quien los consume debe
+ * agruparlos.
+ */
+public interface LandsBankFeed {
+
+    /**
+     * Empieza a entregar ids de land al consumidor. Devuelve false si la fuente no está
+     * disponible (p. ej. la versión de Lands no publica eventos de banco).
+     */
+    boolean start(Consumer<String> sink);
+
+    void stop();
+
+    String describe();
+}
@@ -0,0 +1,546 @@
+package com.helixteam.economyplugin.lands;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Acceso a LandsAPI sin reflection en el camino caliente.
+ *
+ * La API de Lands cambia entre versiones, así que los accesores se descubren por
+ * nombre/firma, pero solo una vez por clase concreta (LandsIntegration, Land, objeto
+ * banco): el resultado se guarda en un ClassValue como MethodHandles ya adaptados a
+ * Object. Cuando un candidato funciona se fija como preferido y las siguientes llamadas
+ * van directas a él. Las ausencias también se cachean: una clase sin getter de banco no
+ * se vuelve a inspeccionar, y un id de land no encontrado no repite el escaneo de
+ * colecciones hasta pasados NEGATIVE_TTL_MS.
+ *
+ * La escritura absoluta (writeBank) solo usa setters explícitos set*Balance: un método de
+ * ingreso nunca se toma por un setter. El primer fallo de cada método se avisa en el log.
+ */
+public class LandsGateway {
+
+    private static final long NEGATIVE_TTL_MS = 30_000L;
+    private static final String[] FIND_BY_STRING = {"getLand", "getLandById", "findLandById", "getLandByULID", "getById", "get"};
+    private static final String[] ID_GETTERS = {"getUlid", "getULID", "getId", "getLandId", "ulid"};
+    private static final String[] BANK_GETTERS = {"getBank", "getBalance", "getBankBalance", "getMoney", "getBankAmount", "getBalanceAmount", "getVaultBalance", "getDeposit"};
+    private static final String[] BANK_SETTERS = {"setBankBalance", "setBalance"};
+    // movimientos relativos: con signo, ingreso y retirada
+    private static final String[] BANK_MODIFIERS = {"modifyBalance", "modifyBank", "modifyBankBalance"};
+    private static final String[] BANK_DEPOSITS = {"depositBank", "addBalance", "addBankBalance", "deposit", "addMoney"};
+    private static final String[] BANK_WITHDRAWALS = {"withdrawBank", "removeBalance", "removeBankBalance", "withdraw", "removeMoney", "takeBalance"};
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType ONE_ARG = MethodType.methodType(Object.class, Object.class, Object.class);
+
+    // setters por nombre genérico (bank/balance/deposit) y setters del objeto banco
+    private static final java.util.Set<ArgKind> GENERIC_KINDS = java.util.EnumSet.of(ArgKind.DOUBLE, ArgKind.LONG, ArgKind.STRING);
+    private static final java.util.Set<ArgKind> BANK_OBJECT_KINDS = java.util.EnumSet.of(ArgKind.BIG_DECIMAL, ArgKind.DOUBLE, ArgKind.STRING);
+    private static final java.util.Set<ArgKind> DELTA_KINDS = java.util.EnumSet.of(ArgKind.BIG_DECIMAL, ArgKind.DOUBLE);
+
+    /**
+     * Resultado de aplicar un movimiento relativo al banco de una land. FAILED: el método
+     * existe pero lanzó una excepción (Lands pudo aplicar el cambio o no); no se prueba
+     * otro método ni la escritura absoluta, se reintenta más tarde el mismo.
+     */
+    public enum DeltaResult { APPLIED, REJECTED, UNSUPPORTED, FAILED }
+
+    private final EconomyPlugin plugin;
+    private final ConcurrentHashMap<String, Long> missingUntil = new ConcurrentHashMap<>();
+    // Clase.método de cada handle descubierto, y los que ya avisaron de un fallo
+    private final ConcurrentHashMap<MethodHandle, String> handleNames = new ConcurrentHashMap<>();
+    private final java.util.Set<MethodHandle> warned = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Forma del argumento que espera un setter de banco.
+     */
+    private enum ArgKind { BIG_DECIMAL, DOUBLE, LONG, STRING }
+
+    private static final class Setter {
+        final MethodHandle handle;
+        final ArgKind kind;
+
+        Setter(MethodHandle handle, ArgKind kind) {
+            this.handle = handle;
+            this.kind = kind;
+        }
+
+        Object arg(java.math.BigDecimal amount) {
+            switch (kind) {
+                case BIG_DECIMAL: return amount;
+                case DOUBLE: return amount.doubleValue();
+                case LONG: return amount.longValue();
+                default: return amount.toPlainString();
+            }
+        }
+    }
+
+    private static final class IntegrationAccess {
+        final List<MethodHandle> byString = new ArrayList<>();
+        final List<MethodHandle> byUuid = new ArrayList<>();
+        final List<MethodHandle> byStringLoose = new ArrayList<>();
+        final List<MethodHandle> collections = new ArrayList<>();
+        volatile MethodHandle preferred;
+    }
+
+    private static final class LandAccess {
+        final MethodHandle idGetter;
+        final List<MethodHandle> bankGetters = new ArrayList<>();
+        final List<Setter> bankSetters = new ArrayList<>();
+        // getters de un objeto "bank/account" sobre el que buscar un setter
+        final List<MethodHandle> bankObjects = new ArrayList<>();
+        final List<Setter> modifiers = new ArrayList<>();
+        final List<Setter> deposits = new ArrayList<>();
+        final List<Setter> withdrawals = new ArrayList<>();
+        volatile MethodHandle preferredGetter;
+        volatile Setter preferredSetter;
+        // método de movimiento que respondió (aplicado, rechazado o fallido); se reintenta ese
+        volatile Setter preferredModifier;
+        volatile Setter preferredDeposit;
+        volatile Setter preferredWithdrawal;
+
+        LandAccess(MethodHandle idGetter) {
+            this.idGetter = idGetter;
+        }
+    }
+
+    private final ClassValue<IntegrationAccess> integrationAccess = new ClassValue<>() {
+        @Override
+        protected IntegrationAccess computeValue(Class<?> cls) {
+            return discoverIntegration(cls);
+        }
+    };
+
+    private final ClassValue<LandAccess> landAccess = new ClassValue<>() {
+        @Override
+        protected LandAccess computeValue(Class<?> cls) {
+            return discoverLand(cls);
+        }
+    };
+
+    // setters del objeto banco devuelto por la Land
+    private final ClassValue<List<Setter>> bankObjectSetters = new ClassValue<>() {
+        @Override
+        protected List<Setter> computeValue(Class<?> cls) {
+            List<Setter> out = new ArrayList<>();
+            for (Method m : cls.getMethods()) {
+                if (!isBalanceSetter(m.getName()) || m.getParameterCount() != 1) continue;
+                Setter s = setter(m, BANK_OBJECT_KINDS);
+                if (s != null) out.add(s);
+            }
+            return out;
+        }
+    };
+
+    public LandsGateway(EconomyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Busca la Land con el id dado (UUID, ULID o cualquier string). Devuelve null si no
+     * existe o si Lands no está disponible.
+     */
+    public Object findLand(String landId) {
+        Object lands = plugin.getLands();
+        if (lands == null || landId == null) return null;
+        Long until = missingUntil.get(landId);
+        if (until != null) {
+            if (until > System.currentTimeMillis()) return null;
+            missingUntil.remove(landId);
+        }
+        IntegrationAccess acc = integrationAccess.get(lands.getClass());
+
+        MethodHandle pref = acc.preferred;
+        if (pref != null) {
+            Object res = call(pref, lands, landId);
+            if (res != null) return res;
+        }
+        for (MethodHandle h : acc.byString) {
+            if (h == pref) continue;
+            Object res = call(h, lands, landId);
+            if (res != null) {
+                acc.preferred = h;
+                return res;
+            }
+        }
+        java.util.UUID uid = parseUuid(landId);
+        if (uid != null) {
+            for (MethodHandle h : acc.byUuid) {
+                Object res = call(h, lands, uid);
+                if (res != null) return res;
+            }
+        }
+        for (MethodHandle h : acc.byStringLoose) {
+            if (h == pref) continue;
+            Object res = call(h, lands, landId);
+            if (res != null) {
+                acc.preferred = h;
+                return res;
+            }
+        }
+        // último recurso: recorrer las colecciones de lands
+        for (MethodHandle h : acc.collections) {
+            Object out = call(h, lands);
+            Object match = scan(out, landId);
+            if (match != null) {
+                plugin.getDebugLogger().fine("findLandById: matched land via collection scan");
+                return match;
+            }
+        }
+        missingUntil.put(landId, System.currentTimeMillis() + NEGATIVE_TTL_MS);
+        return null;
+    }
+
+    /**
+     * Olvida los ids marcados como inexistentes (p. ej. tras crearse una land).
+     */
+    public void clearNegativeCache() {
+        missingUntil.clear();
+    }
+
+    /**
+     * Id de la land (ULID/UUID como string) o null si la clase no expone ninguno.
+     */
+    public String landId(Object land) {
+        if (land == null) return null;
+        MethodHandle h = landAccess.get(land.getClass()).idGetter;
+        if (h == null) return null;
+        Object v = call(h, land);
+        return v == null ? null : v.toString();
+    }
+
+    public java.math.BigDecimal readBank(Object land) {
+        if (land == null) return null;
+        LandAccess acc = landAccess.get(land.getClass());
+        MethodHandle pref = acc.preferredGetter;
+        if (pref != null) {
+            java.math.BigDecimal v = toDecimal(call(pref, land));
+            if (v != null) return v;
+        }
+        for (MethodHandle h : acc.bankGetters) {
+            if (h == pref) continue;
+            java.math.BigDecimal v = toDecimal(call(h, land));
+            if (v != null) {
+                acc.preferredGetter = h;
+                return v;
+            }
+        }
+        return null;
+    }
+
+    public boolean writeBank(Object land, java.math.BigDecimal amount) {
+        if (land == null) return false;
+        LandAccess acc = landAccess.get(land.getClass());
+        Setter pref = acc.preferredSetter;
+        if (pref != null && invokeSetter(pref, land, amount)) return true;
+        for (Setter s : acc.bankSetters) {
+            if (s == pref) continue;
+            if (invokeSetter(s, land, amount)) {
+                acc.preferredSetter = s;
+                return true;
+            }
+        }
+        // Si no hay setter directo, buscar un objeto bank/account con setBalance
+        for (MethodHandle h : acc.bankObjects) {
+            Object bankObj = call(h, land);
+            if (bankObj == null) continue;
+            for (Setter s : bankObjectSetters.get(bankObj.getClass())) {
+                if (invokeSetter(s, bankObj, amount)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Aplica un movimiento relativo (positivo = ingreso) con los métodos de ingreso/retirada
+     * de la land, sin leer ni sobrescribir el saldo. REJECTED si Lands lo rechazó (p. ej.
+     * fondos insuficientes), UNSUPPORTED si la clase no expone ese tipo de métodos, FAILED
+     * si el método lanzó una excepción.
+     */
+    public DeltaResult applyBankDelta(Object land, java.math.BigDecimal delta) {
+        if (land == null) return DeltaResult.UNSUPPORTED;
+        if (delta.signum() == 0) return DeltaResult.APPLIED;
+        LandAccess acc = landAccess.get(land.getClass());
+        boolean withdraw = delta.signum() < 0;
+        Setter pref = acc.preferredModifier != null ? acc.preferredModifier
+                : withdraw ? acc.preferredWithdrawal : acc.preferredDeposit;
+        if (pref != null) {
+            DeltaResult r = invokeDelta(pref, land, pref == acc.preferredModifier ? delta : delta.abs());
+            if (r != DeltaResult.UNSUPPORTED) return r;
+        }
+        for (Setter s : acc.modifiers) {
+            if (s == pref) continue;
+            DeltaResult r = invokeDelta(s, land, delta);
+            if (r == DeltaResult.UNSUPPORTED) continue;
+            acc.preferredModifier = s;
+            return r;
+        }
+        List<Setter> ops = withdraw ? acc.withdrawals : acc.deposits;
+        for (Setter s : ops) {
+            if (s == pref) continue;
+            DeltaResult r = invokeDelta(s, land, delta.abs());
+            if (r == DeltaResult.UNSUPPORTED) continue;
+            if (withdraw) acc.preferredWithdrawal = s;
+            else acc.preferredDeposit = s;
+            return r;
+        }
+        return DeltaResult.UNSUPPORTED;
+    }
+
+    private DeltaResult invokeDelta(Setter s, Object target, java.math.BigDecimal amount) {
+        Object res;
+        try {
+            res = (Object) s.handle.invokeExact(target, s.arg(amount));
+        } catch (java.lang.invoke.WrongMethodTypeException | LinkageError e) {
+            // el método no encaja con esta clase: probar el siguiente
+            plugin.getDebugLogger().fine("LandsGateway: bank delta unsupported: " + e.getMessage());
+            return DeltaResult.UNSUPPORTED;
+        } catch (Throwable t) {
+            // el método se ejecutó y lanzó: el cambio pudo quedar aplicado, no probar otro
+            plugin.getLogger().warning("LandsGateway: error aplicando movimiento de banco: " + t);
+            return DeltaResult.FAILED;
+        }
+        return Boolean.FALSE.equals(res) ? DeltaResult.REJECTED : DeltaResult.APPLIED;
+    }
+
+    private IntegrationAccess discoverIntegration(Class<?> cls) {
+        IntegrationAccess acc = new IntegrationAccess();
+        List<Method> methods = List.of(cls.getMethods());
+        // primero los nombres conocidos, en orden; después UUID y cualquier método *land*(String)
+        for (String name : FIND_BY_STRING) {
+            for (Method m : methods) {
+                if (m.getName().equals(name) && m.getParameterCount() == 1 && m.getParameterTypes()[0] == String.class) {
+                    MethodHandle h = handle(m, ONE_ARG);
+                    if (h != null) acc.byString.add(h);
+                }
+            }
+        }
+        for (Method m : methods) {
+            if (m.getParameterCount() == 1 && m.getParameterTypes()[0] == String.class && m.getName().toLowerCase().contains("land")
+                    && !contains(FIND_BY_STRING, m.getName())) {
+                MethodHandle h = handle(m, ONE_ARG);
+                if (h != null) acc.byStringLoose.add(h);
+            }
+            if (m.getParameterCount() == 1 && m.getParameterTypes()[0] == java.util.UUID.class && m.getName().toLowerCase().contains("land")) {
+                MethodHandle h = handle(m, ONE_ARG);
+                if (h != null) acc.byUuid.add(h);
+            }
+            if (m.getParameterCount() == 0) {
+                Class<?> ret = m.getReturnType();
+                if (Iterable.class.isAssignableFrom(ret) || java.util.Map.class.isAssignableFrom(ret) || ret.isArray()) {
+                    MethodHandle h = handle(m, GETTER);
+                    if (h != null) acc.collections.add(h);
+                }
+            }
+        }
+        plugin.getDebugLogger().fine("LandsGateway: " + cls.getName() + " byString=" + (acc.byString.size() + acc.byStringLoose.size())
+                + " byUuid=" + acc.byUuid.size() + " collections=" + acc.collections.size());
+        return acc;
+    }
+
+    private LandAccess discoverLand(Class<?> cls) {
+        MethodHandle id = null;
+        for (String name : ID_GETTERS) {
+            try {
+                id = handle(cls.getMethod(name), GETTER);
+                if (id != null) break;
+            } catch (NoSuchMethodException ignored) {}
+        }
+        LandAccess acc = new LandAccess(id);
+        Method[] methods = cls.getMethods();
+
+        for (String name : BANK_GETTERS) {
+            try {
+                MethodHandle h = handle(cls.getMethod(name), GETTER);
+                if (h != null) acc.bankGetters.add(h);
+            } catch (NoSuchMethodException ignored) {}
+        }
+        for (Method m : methods) {
+            if (m.getParameterCount() != 0 || contains(BANK_GETTERS, m.getName())) continue;
+            String n = m.getName().toLowerCase();
+            if (n.contains("bank") || n.contains("balance") || n.contains("money") || n.contains("deposit")) {
+                MethodHandle h = handle(m, GETTER);
+                if (h != null) acc.bankGetters.add(h);
+            }
+        }
+
+        for (String name : BANK_SETTERS) {
+            for (Method m : methods) {
+                if (!m.getName().equalsIgnoreCase(name) || m.getParameterCount() != 1) continue;
+                Setter s = setter(m, java.util.EnumSet.allOf(ArgKind.class));
+                if (s != null) acc.bankSetters.add(s);
+            }
+        }
+        for (Method m : methods) {
+            if (m.getParameterCount() != 1 || containsIgnoreCase(BANK_SETTERS, m.getName())) continue;
+            if (isBalanceSetter(m.getName())) {
+                Setter s = setter(m, GENERIC_KINDS);
+                if (s != null) acc.bankSetters.add(s);
+            }
+        }
+        for (Method m : methods) {
+            if (m.getParameterCount() != 0) continue;
+            String n = m.getName().toLowerCase();
+            if (n.contains("bank") || n.contains("account")) {
+                MethodHandle h = handle(m, GETTER);
+                if (h != null) acc.bankObjects.add(h);
+            }
+        }
+        addNamed(methods, BANK_MODIFIERS, acc.modifiers);
+        addNamed(methods, BANK_DEPOSITS, acc.deposits);
+        addNamed(methods, BANK_WITHDRAWALS, acc.withdrawals);
+        plugin.getDebugLogger().fine("LandsGateway: " + cls.getName() + " id=" + (id != null) + " bankGetters="
+                + acc.bankGetters.size() + " bankSetters=" + acc.bankSetters.size() + " deltaOps="
+                + (acc.modifiers.size() + acc.deposits.size() + acc.withdrawals.size()));
+        return acc;
+    }
+
+    private void addNamed(Method[] methods, String[] names, List<Setter> out) {
+        for (String name : names) {
+            for (Method m : methods) {
+                if (!m.getName().equals(name) || m.getParameterCount() != 1) continue;
+                Setter s = setter(m, DELTA_KINDS);
+                if (s != null) out.add(s);
+            }
+        }
+    }
+
+    private Setter setter(Method m, java.util.Set<ArgKind> allowed) {
+        Class<?> p = m.getParameterTypes()[0];
+        ArgKind kind;
+        if (p == java.math.BigDecimal.class) kind = ArgKind.BIG_DECIMAL;
+        else if (p == double.class || p == Double.class) kind = ArgKind.DOUBLE;
+        else if (p == long.class || p == Long.class) kind = ArgKind.LONG;
+        else if (p == String.class) kind = ArgKind.STRING;
+        else return null;
+        if (!allowed.contains(kind)) return null;
+        MethodHandle h = handle(m, ONE_ARG);
+        return h == null ? null : new Setter(h, kind);
+    }
+
+    private boolean invokeSetter(Setter s, Object target, java.math.BigDecimal amount) {
+        try {
+            Object ignored = (Object) s.handle.invokeExact(target, s.arg(amount));
+            return true;
+        } catch (Throwable t) {
+            failed(s.handle, t);
+            return false;
+        }
+    }
+
+    /**
+     * Setter absoluto del saldo: set...Balance (setBalance, setBankBalance, ...).
+     */
+    private static boolean isBalanceSetter(String name) {
+        String n = name.toLowerCase();
+        return n.startsWith("set") && n.endsWith("balance");
+    }
+
+    /**
+     * Primer fallo de cada método en warning; los siguientes, solo en debug.
+     */
+    private void failed(MethodHandle h, Throwable t) {
+        String name = handleNames.getOrDefault(h, String.valueOf(h.type()));
+        if (warned.add(h)) plugin.getLogger().warning("LandsGateway: fallo invocando " + name + ": " + t);
+        else plugin.getDebugLogger().fine("LandsGateway: invocation failed (" + name + "): " + t.getMessage());
+    }
+
+    /**
+     * MethodHandle adaptado a firma genérica de Object, o null si no es accesible.
+     */
+    private MethodHandle handle(Method m, MethodType type) {
+        try {
+            MethodHandle h;
+            try {
+                h = MethodHandles.publicLookup().unreflect(m);
+            } catch (IllegalAccessException e) {
+                // método público declarado en una clase de implementación no pública
+                m.setAccessible(true);
+                h = MethodHandles.lookup().unreflect(m);
+            }
+            h = h.asType(type);
+            handleNames.put(h, m.getDeclaringClass().getSimpleName() + "." + m.getName());
+            return h;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private Object call(MethodHandle h, Object target) {
+        try {
+            return (Object) h.invokeExact(target);
+        } catch (Throwable t) {
+            failed(h, t);
+            return null;
+        }
+    }
+
+    private Object call(MethodHandle h, Object target, Object arg) {
+        try {
+            return (Object) h.invokeExact(target, arg);
+        } catch (Throwable t) {
+            failed(h, t);
+            return null;
+        }
+    }
+
+    private Object scan(Object out, String landId) {
+        if (out == null) return null;
+        if (out.getClass().isArray()) {
+            int len = java.lang.reflect.Array.getLength(out);
+            for (int i = 0; i < len; i++) {
+                Object c = java.lang.reflect.Array.get(out, i);
+                if (matches(c, landId)) return c;
+            }
+            return null;
+        }
+        Iterable<?> it = out instanceof java.util.Map ? ((java.util.Map<?, ?>) out).values() : out instanceof Iterable ? (Iterable<?>) out : null;
+        if (it == null) return null;
+        for (Object c : it) {
+            if (matches(c, landId)) return c;
+        }
+        return null;
+    }
+
+    private boolean matches(Object candidate, String landId) {
+        if (candidate == null) return false;
+        String id = landId(candidate);
+        if (id != null) return id.equals(landId);
+        String ts = candidate.toString();
+        return ts != null && ts.contains(landId);
+    }
+
+    private static java.math.BigDecimal toDecimal(Object out) {
+        if (out == null) return null;
+        if (out instanceof java.math.BigDecimal) return (java.math.BigDecimal) out;
+        if (out instanceof Number) return java.math.BigDecimal.valueOf(((Number) out).doubleValue());
+        try {
+            return new java.math.BigDecimal(out.toString());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static java.util.UUID parseUuid(String s) {
+        try {
+            return java.util.UUID.fromString(s);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean contains(String[] arr, String s) {
+        for (String a : arr) if (a.equals(s)) return true;
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(String[] arr, String s) {
+        for (String a : arr) if (a.equalsIgnoreCase(s)) return true;
+        return false;
+    }
+}
@@ -0,0 +1,32 @@
+package com.helixteam.economyplugin.work;
+
+/**
+ * Acciones de trabajo que otorgan puntos. `key` es el nombre usado en
+ * `work_points.actions`.
+ */
+public enum WorkAction {
+    BREAK("break"),
+    PLACE("place"),
+    INTERACTION("interaction"),
+    KILL("kill");
+
+    private final String key;
+
+    WorkAction(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Acción para una clave de configuración, o null si no existe.
+     */
+    public static WorkAction fromKey(String key) {
+        for (WorkAction a : values()) {
+            if (a.key.equalsIgnoreCase(key)) return a;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package com.helixteam.economyplugin.work;
+
+import org.bukkit.Material;
+import org.bukkit.entity.EntityType;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cooldowns de trabajo por jugador en tablas primitivas.
+ *
+ * Cada jugador conectado tiene, por acción, un long[] indexado por el ordinal del
+ * Material (o del EntityType para KILL) con el instante (ms) del último pago; la tabla de
+ * una acción se crea la primera vez que el jugador la usa. Consultar y actualizar no
+ * reserva memoria. Al salir el jugador se liberan sus tablas, así la memoria depende de
+ * los jugadores conectados.
+ */
+public class WorkCooldowns {
+
+    private static final int MATERIALS = Material.values().length;
+    private static final int ENTITIES = EntityType.values().length;
+    private static final int ACTIONS = WorkAction.values().length;
+
+    private final ConcurrentHashMap<UUID, long[][]> tables = new ConcurrentHashMap<>();
+
+    /**
+     * true si ha pasado el cooldown para (jugador, acción, ordinal) y registra el instante.
+     */
+    public boolean tryConsume(UUID player, WorkAction action, int ordinal, long cooldownMs, long nowMs) {
+        if (cooldownMs <= 0) return true;
+        long[][] perAction = tables.get(player);
+        if (perAction == null) perAction = tables.computeIfAbsent(player, k -> new long[ACTIONS][]);
+        long[] t = perAction[action.ordinal()];
+        if (t == null) {
+            t = new long[action == WorkAction.KILL ? ENTITIES : MATERIALS];
+            perAction[action.ordinal()] = t;
+        }
+        long last = t[ordinal];
+        if (last != 0L && nowMs - last < cooldownMs) return false;
+        t[ordinal] = nowMs;
+        return true;
+    }
+
+    public void release(UUID player) {
+        tables.remove(player);
+    }
+
+    public void clear() {
+        tables.clear();
+    }
+
+    public int getTrackedPlayers() {
+        return tables.size();
+    }
+
+    /**
+     * Memoria aproximada de las tablas (bytes): 8 por entrada más cabeceras de array.
+     */
+    public long footprintBytes() {
+        long bytes = 0;
+        for (long[][] perAction : tables.values()) {
+            bytes += 16 + 8L * perAction.length;
+            for (long[] t : perAction) {
+                if (t != null) bytes += 16 + 8L * t.length;
+            }
+        }
+        return bytes;
+    }
+}
@@ -1,6 +1,7 @@
 package com.helixteam.economyplugin.work;
 
 import com.helixteam.economyplugin.EconomyPlugin;
+import org.bukkit.Material;
 import org.bukkit.entity.EntityType;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -8,10 +9,12 @@ import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.EquipmentSlot;
 
 /**
- * Listener para acciones de trabajo: break, place, interaction, kill
+ * Listener para acciones de trabajo: break, place, interaction, kill.
+ * Los puntos se acumulan en WorkPayoutBatcher y se pagan por lotes.
  */
 public class WorkListener implements Listener {
 
@@ -25,55 +28,59 @@ public class WorkListener implements Listener {
 
     @EventHandler(ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
+        Material type = event.getBlock().getType();
+        // prefiltro: la gran mayoría de bloques no tiene recompensa
+        if (!manager.isRewarded(WorkAction.BREAK, type)) return;
         var player = event.getPlayer();
-        int points = manager.getMaterialReward("break", event.getBlock().getType());
-        if (points > 0) {
-            // cooldown per player+action to avoid farming abuse
-            String key = "break:" + event.getBlock().getType().name();
-            if (manager.tryConsumeCooldown(player.getUniqueId(), key)) {
-                plugin.getEconomy().depositPlayer(player, points);
-            }
+        int points = manager.getMaterialReward(WorkAction.BREAK, type);
+        // cooldown per player+action to avoid farming abuse
+        if (manager.tryConsumeCooldown(player.getUniqueId(), WorkAction.BREAK, type.ordinal())) {
+            manager.getPayouts().add(player.getUniqueId(), points);
         }
     }
 
     @EventHandler(ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
+        Material type = event.getBlock().getType();
+        if (!manager.isRewarded(WorkAction.PLACE, type)) return;
         var player = event.getPlayer();
-        int points = manager.getMaterialReward("place", event.getBlock().getType());
-        if (points > 0) {
-            String key = "place:" + event.getBlock().getType().name();
-            if (manager.tryConsumeCooldown(player.getUniqueId(), key)) {
-                plugin.getEconomy().depositPlayer(player, points);
-            }
+        int points = manager.getMaterialReward(WorkAction.PLACE, type);
+        if (manager.tryConsumeCooldown(player.getUniqueId(), WorkAction.PLACE, type.ordinal())) {
+            manager.getPayouts().add(player.getUniqueId(), points);
         }
     }
 
     @EventHandler(ignoreCancelled = true)
     public void onPlayerInteract(PlayerInteractEvent event) {
+        var block = event.getClickedBlock();
+        if (block == null) return;
+        Material type = block.getType();
+        if (!manager.isRewarded(WorkAction.INTERACTION, type)) return;
         // Only consider main hand right-click block interactions
         if (event.getHand() == EquipmentSlot.OFF_HAND) return;
-        if (event.getClickedBlock() == null) return;
         var player = event.getPlayer();
-        int points = manager.getMaterialReward("interaction", event.getClickedBlock().getType());
-        if (points > 0) {
-            String key = "interaction:" + event.getClickedBlock().getType().name();
-            if (manager.tryConsumeCooldown(player.getUniqueId(), key)) {
-                plugin.getEconomy().depositPlayer(player, points);
-            }
+        int points = manager.getMaterialReward(WorkAction.INTERACTION, type);
+        if (manager.tryConsumeCooldown(player.getUniqueId(), WorkAction.INTERACTION, type.ordinal())) {
+            manager.getPayouts().add(player.getUniqueId(), points);
         }
     }
 
     @EventHandler(ignoreCancelled = true)
     public void onEntityDeath(EntityDeathEvent event) {
+        EntityType type = event.getEntityType();
+        if (!manager.isRewarded(type)) return;
         var killer = event.getEntity().getKiller();
         if (killer == null) return;
-        EntityType type = event.getEntityType();
         int points = manager.getKillReward(type);
-        if (points > 0) {
-            String key = "kill:" + type.name();
-            if (manager.tryConsumeCooldown(killer.getUniqueId(), key)) {
-                plugin.getEconomy().depositPlayer(killer, points);
-            }
+        if (manager.tryConsumeCooldown(killer.getUniqueId(), WorkAction.KILL, type.ordinal())) {
+            manager.getPayouts().add(killer.getUniqueId(), points);
         }
     }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // pagar lo acumulado antes de que el jugador se vaya y soltar sus cooldowns
+        manager.getPayouts().flush(event.getPlayer().getUniqueId());
+        manager.releasePlayer(event.getPlayer().getUniqueId());
+    }
 }
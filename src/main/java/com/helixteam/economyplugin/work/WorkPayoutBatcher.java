@@ -0,0 +1,189 @@
+package com.helixteam.economyplugin.work;
+
+import com.helixteam.economyplugin.EconomyPlugin;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Acumula los puntos de trabajo por jugador y los paga en un único depósito de Vault
+ * cada `work_points.payout.flush_seconds`, al salir el jugador y al deshabilitar el
+ * plugin. Así las escrituras de la economía dependen del número de jugadores y no del
+ * número de bloques/eventos.
+ *
+ * Los puntos se suman y se vacían en el hilo principal (eventos y tarea de volcado), por
+ * lo que sumThenReset no pierde puntos entre la lectura y el reseteo.
+ *
+ * Lo que Vault no acepta al deshabilitar se guarda por jugador en data/work-unpaid.yml; al
+ * arrancar se carga, se intenta pagar enseguida y el archivo se reescribe con lo que
+ * quede (o se borra), para no pagarlo dos veces si el servidor cae después.
+ */
+public class WorkPayoutBatcher {
+
+    private final EconomyPlugin plugin;
+    private final ConcurrentHashMap<UUID, LongAdder> pending = new ConcurrentHashMap<>();
+    private final File file;
+    private org.bukkit.scheduler.BukkitTask task = null;
+    // hay puntos cargados de work-unpaid.yml que aún no se han intentado pagar
+    private boolean restored = false;
+
+    public WorkPayoutBatcher(EconomyPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "data/work-unpaid.yml");
+        loadUnpaid();
+    }
+
+    public void start() {
+        stopTimer();
+        if (restored) {
+            restored = false;
+            long points = getPendingPoints();
+            flushAll();
+            plugin.getLogger().info("Pagados " + (points - getPendingPoints()) + " de " + points + " puntos de trabajo pendientes del último apagado.");
+            saveUnpaid();
+        }
+        int secs = Math.max(1, plugin.getConfig().getInt("work_points.payout.flush_seconds", 5));
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flushAll, secs * 20L, secs * 20L);
+    }
+
+    /**
+     * Para la tarea y paga todo lo pendiente. Lo que Vault no acepte se guarda en
+     * data/work-unpaid.yml para pagarlo en el próximo arranque.
+     */
+    public void shutdown() {
+        stopTimer();
+        long points = getPendingPoints();
+        int players = getPendingPlayers();
+        flushAll();
+        long unpaid = getPendingPoints();
+        if (points - unpaid > 0) plugin.getLogger().info("Pagados " + (points - unpaid) + " puntos de trabajo pendientes a " + (players - getPendingPlayers()) + " jugadores.");
+        if (unpaid > 0) plugin.getLogger().warning("Quedan " + unpaid + " puntos de trabajo sin pagar (Vault los rechazó); se pagarán al volver a arrancar.");
+        saveUnpaid();
+        pending.clear();
+    }
+
+    public void add(UUID player, int points) {
+        if (points <= 0) return;
+        pending.computeIfAbsent(player, k -> new LongAdder()).add(points);
+    }
+
+    public void flush(UUID player) {
+        LongAdder acc = pending.remove(player);
+        if (acc != null) pay(player, acc.sum());
+    }
+
+    public void flushAll() {
+        int players = 0;
+        long total = 0;
+        for (Map.Entry<UUID, LongAdder> e : pending.entrySet()) {
+            long points = e.getValue().sumThenReset();
+            if (points <= 0) continue;
+            players++;
+            total += points;
+            pay(e.getKey(), points);
+        }
+        // jugadores sin saldo pendiente y desconectados: fuera del mapa
+        pending.entrySet().removeIf(e -> e.getValue().sum() == 0 && plugin.getServer().getPlayer(e.getKey()) == null);
+        if (players > 0) plugin.getDebugLogger().finer("Work payouts: " + total + " puntos a " + players + " jugadores.");
+    }
+
+    /**
+     * Puntos acumulados aún no pagados para el jugador.
+     */
+    public long getPending(UUID player) {
+        LongAdder acc = pending.get(player);
+        return acc == null ? 0L : acc.sum();
+    }
+
+    public long getPendingPoints() {
+        long n = 0;
+        for (LongAdder acc : pending.values()) n += acc.sum();
+        return n;
+    }
+
+    public int getPendingPlayers() {
+        int n = 0;
+        for (LongAdder acc : pending.values()) if (acc.sum() > 0) n++;
+        return n;
+    }
+
+    private void pay(UUID player, long points) {
+        if (points <= 0) return;
+        try {
+            OfflinePlayer p = plugin.getServer().getOfflinePlayer(player);
+            EconomyResponse resp = plugin.getEconomy().depositPlayer(p, points);
+            if (resp != null && resp.transactionSuccess()) return;
+            plugin.getLogger().warning("No se pudieron pagar " + points + " puntos de trabajo a " + player + "; se reintentará.");
+        } catch (Throwable t) {
+            plugin.getLogger().warning("Error pagando puntos de trabajo a " + player + ": " + t.getMessage());
+        }
+        // devolver al acumulador para el siguiente volcado (como long: sin recortar)
+        pending.computeIfAbsent(player, k -> new LongAdder()).add(points);
+    }
+
+    /**
+     * Escribe lo pendiente por jugador en data/work-unpaid.yml, o borra el archivo si no
+     * queda nada.
+     */
+    private void saveUnpaid() {
+        YamlConfiguration cfg = new YamlConfiguration();
+        for (Map.Entry<UUID, LongAdder> e : pending.entrySet()) {
+            long left = e.getValue().sum();
+            if (left > 0) cfg.set(e.getKey().toString(), left);
+        }
+        try {
+            if (cfg.getKeys(false).isEmpty()) {
+                Files.deleteIfExists(file.toPath());
+                return;
+            }
+            File dir = file.getParentFile();
+            if (!dir.exists()) dir.mkdirs();
+            Path tmp = new File(dir, "work-unpaid.yml.tmp").toPath();
+            Files.write(tmp, cfg.saveToString().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().severe("No se pudieron guardar los puntos de trabajo sin pagar: " + e.getMessage());
+            for (Map.Entry<UUID, LongAdder> en : pending.entrySet()) {
+                long left = en.getValue().sum();
+                if (left > 0) plugin.getLogger().severe("  " + en.getKey() + ": " + left + " puntos");
+            }
+        }
+    }
+
+    private void loadUnpaid() {
+        if (!file.exists()) return;
+        YamlConfiguration cfg = YamlConfiguration.loadConfiguration(file);
+        restored = true;
+        for (String key : cfg.getKeys(false)) {
+            long points = cfg.getLong(key, 0L);
+            if (points <= 0) continue;
+            try {
+                pending.computeIfAbsent(UUID.fromString(key), k -> new LongAdder()).add(points);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("work-unpaid.yml: jugador inválido " + key + "; se ignora.");
+            }
+        }
+    }
+
+    private void stopTimer() {
+        if (task != null) {
+            try { task.cancel(); } catch (Throwable ignored) {}
+            task = null;
+        }
+    }
+}
@@ -5,13 +5,8 @@ import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.EntityType;
 
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Manager para puntos de trabajo configurables desde config.yml.
@@ -20,21 +15,31 @@ import java.util.concurrent.TimeUnit;
 public class WorkPointManager {
 
     private final EconomyPlugin plugin;
-    private final Map<String, Map<Material, Integer>> materialRewards = new HashMap<>();
-    private final Map<EntityType, Integer> killRewards = new HashMap<>();
+    // tablas compiladas en loadConfig y publicadas de una vez (lectura sin bloqueo)
+    private volatile WorkRewardTable rewards = WorkRewardTable.EMPTY;
     // cooldown in seconds between awarding points for the same player+action
     private int cooldownSeconds = 5;
-    // per-player per-action last timestamp (epoch seconds)
-    private final ConcurrentMap<UUID, ConcurrentMap<String, Long>> lastAction = new ConcurrentHashMap<>();
+    // per-player per-action last timestamp, primitive tables released on quit
+    private final WorkCooldowns cooldowns = new WorkCooldowns();
+    private final WorkPayoutBatcher payouts;
 
     public WorkPointManager(EconomyPlugin plugin) {
         this.plugin = plugin;
+        this.payouts = new WorkPayoutBatcher(plugin);
     }
 
-    public void loadConfig() {
-        materialRewards.clear();
-        killRewards.clear();
+    public WorkPayoutBatcher getPayouts() {
+        return payouts;
+    }
+
+    /**
+     * Paga los puntos pendientes (al deshabilitar el plugin).
+     */
+    public void shutdown() {
+        payouts.shutdown();
+    }
 
+    public void loadConfig() {
         // read cooldown (seconds)
         try {
             this.cooldownSeconds = plugin.getConfig().getInt("work_points.cooldown_seconds", 5);
@@ -42,67 +47,85 @@ public class WorkPointManager {
         } catch (Exception ignored) {
             this.cooldownSeconds = 5;
         }
+        payouts.start();
+        plugin.getDebugLogger().fine("Work cooldowns: " + cooldowns.getTrackedPlayers() + " jugadores, "
+                + (cooldowns.footprintBytes() / 1024) + " KiB");
 
         ConfigurationSection root = plugin.getConfig().getConfigurationSection("work_points.actions");
-        if (root == null) return;
-
-        for (String actionKey : root.getKeys(false)) {
-            if (actionKey == null) continue;
-            String action = actionKey.toLowerCase(Locale.ROOT);
-            ConfigurationSection actionSec = root.getConfigurationSection(actionKey);
-            if (actionSec == null) continue;
-
-            if (action.equals("kill")) {
-                // Keys are EntityType names
-                for (String entKey : actionSec.getKeys(false)) {
-                    try {
-                        EntityType et = EntityType.valueOf(entKey.toUpperCase(Locale.ROOT));
-                        int val = actionSec.getInt(entKey, 0);
-                        if (val > 0) killRewards.put(et, val);
-                    } catch (IllegalArgumentException ex) {
-                        plugin.getLogger().warning("Entidad inválida en work_points.actions.kill: " + entKey + " - se ignora");
-                    }
+        WorkRewardTable.Builder table = new WorkRewardTable.Builder();
+        if (root != null) {
+            for (String actionKey : root.getKeys(false)) {
+                if (actionKey == null) continue;
+                WorkAction action = WorkAction.fromKey(actionKey);
+                ConfigurationSection actionSec = root.getConfigurationSection(actionKey);
+                if (actionSec == null) continue;
+                if (action == null) {
+                    plugin.getLogger().warning("Acción desconocida en work_points.actions: " + actionKey + " - se ignora");
+                    continue;
                 }
-            } else {
-                // Treat keys as Material
-                Map<Material, Integer> map = new HashMap<>();
-                for (String matKey : actionSec.getKeys(false)) {
-                    try {
-                        Material m = Material.valueOf(matKey.toUpperCase(Locale.ROOT));
-                        int val = actionSec.getInt(matKey, 0);
-                        if (val > 0) map.put(m, val);
-                    } catch (IllegalArgumentException ex) {
-                        plugin.getLogger().warning("Material inválido en work_points.actions." + action + ": " + matKey + " - se ignora");
+
+                if (action == WorkAction.KILL) {
+                    // Keys are EntityType names
+                    for (String entKey : actionSec.getKeys(false)) {
+                        try {
+                            EntityType et = EntityType.valueOf(entKey.toUpperCase(Locale.ROOT));
+                            table.put(action, et.ordinal(), actionSec.getInt(entKey, 0));
+                        } catch (IllegalArgumentException ex) {
+                            plugin.getLogger().warning("Entidad inválida en work_points.actions.kill: " + entKey + " - se ignora");
+                        }
+                    }
+                } else {
+                    // Treat keys as Material
+                    for (String matKey : actionSec.getKeys(false)) {
+                        try {
+                            Material m = Material.valueOf(matKey.toUpperCase(Locale.ROOT));
+                            table.put(action, m.ordinal(), actionSec.getInt(matKey, 0));
+                        } catch (IllegalArgumentException ex) {
+                            plugin.getLogger().warning("Material inválido en work_points.actions." + action.key() + ": " + matKey + " - se ignora");
+                        }
                     }
                 }
-                materialRewards.put(action, map);
             }
         }
+        rewards = table.build();
     }
 
     /**
-     * Try to consume cooldown for a given player and action key. Returns true
-     * if enough time has passed and the action can proceed (and updates the timestamp).
+     * Try to consume cooldown for a given player, action and Material/EntityType ordinal.
+     * Returns true if enough time has passed and the action can proceed (and updates the
+     * timestamp).
      */
-    public boolean tryConsumeCooldown(java.util.UUID player, String actionKey) {
-        if (cooldownSeconds <= 0) return true;
-        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-        var map = lastAction.computeIfAbsent(player, k -> new ConcurrentHashMap<>());
-        Long last = map.get(actionKey);
-        if (last == null || (now - last) >= cooldownSeconds) {
-            map.put(actionKey, now);
-            return true;
-        }
-        return false;
+    public boolean tryConsumeCooldown(UUID player, WorkAction action, int ordinal) {
+        return cooldowns.tryConsume(player, action, ordinal, cooldownSeconds * 1000L, System.currentTimeMillis());
+    }
+
+    /**
+     * Libera los cooldowns del jugador (al salir).
+     */
+    public void releasePlayer(UUID player) {
+        cooldowns.release(player);
+    }
+
+    public WorkCooldowns getCooldowns() {
+        return cooldowns;
+    }
+
+    /**
+     * Prefiltro: true si el material tiene recompensa para la acción (un bit).
+     */
+    public boolean isRewarded(WorkAction action, Material material) {
+        return rewards.isRewarded(action, material.ordinal());
+    }
+
+    public int getMaterialReward(WorkAction action, Material material) {
+        return rewards.reward(action, material.ordinal());
     }
 
-    public int getMaterialReward(String action, Material material) {
-        var map = materialRewards.get(action.toLowerCase(Locale.ROOT));
-        if (map == null) return 0;
-        return map.getOrDefault(material, 0);
+    public boolean isRewarded(EntityType type) {
+        return rewards.isRewarded(WorkAction.KILL, type.ordinal());
     }
 
     public int getKillReward(EntityType type) {
-        return killRewards.getOrDefault(type, 0);
+        return rewards.reward(WorkAction.KILL, type.ordinal());
     }
 }
@@ -0,0 +1,67 @@
+package com.helixteam.economyplugin.work;
+
+import org.bukkit.Material;
+import org.bukkit.entity.EntityType;
+
+import java.util.BitSet;
+
+/**
+ * Recompensas de trabajo compiladas desde la configuración.
+ *
+ * Por acción, un int[] indexado por Material.ordinal() (EntityType.ordinal() para KILL)
+ * y un BitSet con los ordinales que tienen recompensa, para descartar la mayoría de
+ * eventos con una sola comprobación de bit. Es inmutable tras construirse:
+ * WorkPointManager publica una tabla nueva en cada recarga.
+ */
+public final class WorkRewardTable {
+
+    public static final WorkRewardTable EMPTY = new Builder().build();
+
+    private final int[][] rewards;
+    private final BitSet[] rewarded;
+
+    private WorkRewardTable(int[][] rewards, BitSet[] rewarded) {
+        this.rewards = rewards;
+        this.rewarded = rewarded;
+    }
+
+    /**
+     * true si el Material/EntityType con ese ordinal tiene recompensa para la acción.
+     */
+    public boolean isRewarded(WorkAction action, int ordinal) {
+        return rewarded[action.ordinal()].get(ordinal);
+    }
+
+    public int reward(WorkAction action, int ordinal) {
+        int[] t = rewards[action.ordinal()];
+        return ordinal < t.length ? t[ordinal] : 0;
+    }
+
+    public int size(WorkAction action) {
+        return rewarded[action.ordinal()].cardinality();
+    }
+
+    public static final class Builder {
+        private final int[][] rewards = new int[WorkAction.values().length][];
+        private final BitSet[] rewarded = new BitSet[WorkAction.values().length];
+
+        public Builder() {
+            for (WorkAction a : WorkAction.values()) {
+                int n = a == WorkAction.KILL ? EntityType.values().length : Material.values().length;
+                rewards[a.ordinal()] = new int[n];
+                rewarded[a.ordinal()] = new BitSet(n);
+            }
+        }
+
+        public Builder put(WorkAction action, int ordinal, int points) {
+            if (points <= 0) return this;
+            rewards[action.ordinal()][ordinal] = points;
+            rewarded[action.ordinal()].set(ordinal);
+            return this;
+        }
+
+        public WorkRewardTable build() {
+            return new WorkRewardTable(rewards, rewarded);
+        }
+    }
+}
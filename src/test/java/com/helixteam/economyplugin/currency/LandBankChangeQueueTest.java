@@ -0,0 +1,164 @@
+package com.helixteam.economyplugin.currency;
+
+import com.helixteam.economyplugin.lands.LandsBankFeed;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Agrupación de avisos de LandBankChangeQueue alimentada directamente por un LandsBankFeed.
+ */
+class LandBankChangeQueueTest {
+
+    /**
+     * Feed manual: publish() entrega el id como lo haría Lands.
+     */
+    private static final class ManualFeed implements LandsBankFeed {
+        private final boolean available;
+        private volatile Consumer<String> sink;
+        boolean stopped;
+
+        ManualFeed(boolean available) {
+            this.available = available;
+        }
+
+        @Override
+        public boolean start(Consumer<String> sink) {
+            if (!available) return false;
+            this.sink = sink;
+            return true;
+        }
+
+        @Override
+        public void stop() {
+            sink = null;
+            stopped = true;
+        }
+
+        void publish(String landId) {
+            Consumer<String> s = sink;
+            if (s != null) s.accept(landId);
+        }
+
+        @Override
+        public String describe() {
+            return "manual";
+        }
+    }
+
+    private final Map<String, AtomicInteger> syncs = new ConcurrentHashMap<>();
+    private final List<String> synced = new ArrayList<>();
+
+    private LandBankChangeQueue queue(CurrencyManager.SyncResult result) {
+        return new LandBankChangeQueue(null, id -> {
+            syncs.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+            return result;
+        }, synced::add);
+    }
+
+    @Test
+    void repeatedNoticesSyncOncePerDrain() {
+        LandBankChangeQueue q = queue(CurrencyManager.SyncResult.CHANGED);
+        ManualFeed feed = new ManualFeed(true);
+        assertTrue(q.attach(feed));
+
+        feed.publish("a");
+        feed.publish("a");
+        feed.publish("b");
+        feed.publish("a");
+        q.drain();
+
+        assertEquals(1, syncs.get("a").get());
+        assertEquals(1, syncs.get("b").get());
+        assertEquals(4, q.getReceived());
+        assertEquals(2, q.getApplied());
+        assertEquals(2, synced.size());
+        assertTrue(synced.containsAll(List.of("a", "b")));
+
+        // nada nuevo: el siguiente drain no sincroniza
+        q.drain();
+        assertEquals(1, syncs.get("a").get());
+
+        feed.publish("a");
+        q.drain();
+        assertEquals(2, syncs.get("a").get());
+    }
+
+    @Test
+    void failedSyncIsNotCountedNorPostponed() {
+        LandBankChangeQueue q = queue(CurrencyManager.SyncResult.FAILED);
+        ManualFeed feed = new ManualFeed(true);
+        assertTrue(q.attach(feed));
+
+        feed.publish("a");
+        q.drain();
+
+        assertEquals(1, syncs.get("a").get());
+        assertEquals(0, q.getApplied());
+        assertTrue(synced.isEmpty());
+    }
+
+    @Test
+    void unavailableFeedIsNotAttached() {
+        LandBankChangeQueue q = queue(CurrencyManager.SyncResult.CHANGED);
+        assertFalse(q.attach(new ManualFeed(false)));
+        assertFalse(q.isActive());
+    }
+
+    @Test
+    void stopDetachesFeedAndDropsPending() {
+        LandBankChangeQueue q = queue(CurrencyManager.SyncResult.CHANGED);
+        ManualFeed feed = new ManualFeed(true);
+        assertTrue(q.attach(feed));
+
+        feed.publish("a");
+        q.stop();
+        feed.publish("b");
+        q.drain();
+
+        assertTrue(feed.stopped);
+        assertTrue(syncs.isEmpty());
+    }
+
+    @Test
+    void concurrentNoticesCoalesce() throws InterruptedException {
+        LandBankChangeQueue q = queue(CurrencyManager.SyncResult.UNCHANGED);
+        ManualFeed feed = new ManualFeed(true);
+        assertTrue(q.attach(feed));
+
+        int threads = 4;
+        int perThread = 1000;
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) feed.publish("land-" + (i % 10));
+            });
+            w.start();
+            workers.add(w);
+        }
+        go.countDown();
+        for (Thread w : workers) w.join();
+        q.drain();
+
+        assertEquals(threads * perThread, q.getReceived());
+        assertEquals(10, syncs.size());
+        for (AtomicInteger n : syncs.values()) assertEquals(1, n.get());
+        assertEquals(10, q.getApplied());
+    }
+}